@@ -0,0 +1,85 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+@Name("rs.alexanderstojanovich.dfg.FontOperation")
+@Label("Font Operation")
+@Description("Loading, deriving, encoding or saving of the Doom font")
+@Category({"Doom Font Generator", "Font"})
+@StackTrace(false)
+public class JfrFontEvent extends Event implements FontEvent { // flight recorder event, built only by JDK having JFR API
+
+    @Label("Operation")
+    @Description("Which operation it is {loadFromFile, loadFont, unloadFont, derive, saveToFile}")
+    private String operation;
+
+    @Label("Source")
+    @Description("File or font which it is about")
+    private String source;
+
+    @Label("Font Type")
+    @Description("Font type in set {FON1, FON2, BMF}")
+    private String fontType;
+
+    @Label("Glyph Count")
+    private int glyphCount;
+
+    @Label("Bytes")
+    @Description("Size of the font lump (read or written) or of the rendered image")
+    @DataAmount
+    private long bytes;
+
+    @Label("Palette Size")
+    private int paletteSize;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    JfrFontEvent(String operation) {
+        this.operation = operation;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // ends the event and writes it into the recording (if the recording wants it)
+    @Override
+    public void end(String source, String fontType, int glyphCount, long bytes, int paletteSize) {
+        end();
+        if (shouldCommit()) {
+            this.source = source;
+            this.fontType = fontType;
+            this.glyphCount = glyphCount;
+            this.bytes = bytes;
+            this.paletteSize = paletteSize;
+            commit();
+        }
+    }
+
+}
@@ -18,6 +18,9 @@ package rs.alexanderstojanovich.dfg.fonts;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import rs.alexanderstojanovich.dfg.util.FontEvent;
+import rs.alexanderstojanovich.dfg.util.FontEvents;
 
 /**
  *
@@ -55,8 +58,16 @@ public class BMF extends DoomFont {
     //--------------------------------------------------------------------------
     // A1 - CONSTRUCTOR USED WHEN READING FROM THE BINARY "BMF" FILE
     public BMF(byte[] buffer) {
+        this(buffer, false);
+    }
+
+    // A1L - SAME AS A1 BUT CHARS ARE VIEWS INTO THE BUFFER (NOTHING IS COPIED)
+    public BMF(byte[] buffer, boolean lazy) {
         super(buffer);
+        this.lazy = lazy;
+        FontEvent event = FontEvents.begin(FontEvents.LOAD_FONT);
         this.loadFont(); // loads font by creating char data about it
+        endEvent(event, null);
     }
 
     // A2 - CONSTRUCTOR USED WHEN MAKING "BMF" FONT FROM PRE EXISTING INSTALLED FONT - NEW SCHOOL VARIANT
@@ -69,7 +80,9 @@ public class BMF extends DoomFont {
         this.line_height = line_height;
         this.size_over = size_over;
         this.size_under = size_under;
+        FontEvent event = FontEvents.begin(FontEvents.UNLOAD_FONT);
         this.unloadFont();
+        endEvent(event, null);
     }
 
     //--------------------------------------------------------------------------
@@ -130,11 +143,8 @@ public class BMF extends DoomFont {
             // -- READ INFO LENGTH                    
             int l = buffer[pos++] & 0xFF;
             // -- READ INFO STRING            
-            char[] infoStr = new char[l];
-            for (int i = 0; i < l; i++) {
-                infoStr[i] = (char) buffer[pos++];
-            }
-            this.info = String.valueOf(infoStr);
+            this.info = new String(buffer, pos, l, StandardCharsets.ISO_8859_1);
+            pos += l;
             // -- READING NUMBER OF CHARACTERS IN THE FONT                                                     
             int numchars = ((buffer[pos + 1] & 0xFF) << 8) | (buffer[pos] & 0xFF);
             pos += 2;
@@ -143,21 +153,32 @@ public class BMF extends DoomFont {
             this.chars = new BMFChar[numchars];
             // -- READING CHAR ITSELF, ONE BY ONE                                                                                                   
             for (int i = 0; i < numchars; i++) {
+                // char and it's data must be inside the buffer (lazy char is a view into it)
+                if (pos + 6 > buffer.length || pos + 6 + (buffer[pos + 1] & 0xFF) * (buffer[pos + 2] & 0xFF) > buffer.length) {
+                    this.chars = null;
+                    this.error = true;
+                    this.errorMsg = "Error - Character data is truncated!";
+                    return;
+                }
                 char c = (char) buffer[pos];
                 int w = buffer[pos + 1] & 0xFF;
                 int h = buffer[pos + 2] & 0xFF;
-                this.chars[i] = new BMFChar(c, w, h);
+                this.chars[i] = (this.lazy) ? new BMFChar(c, w, h, buffer, pos + 6) : new BMFChar(c, w, h);
                 BMFChar ch = (BMFChar) this.chars[i];
-                if (h > this.maxheight) {
-                    this.maxheight = h;
-                }
                 ch.setRelx((int) buffer[pos + 3]);
                 ch.setRely((int) buffer[pos + 4]);
                 ch.setShift(buffer[pos + 5]);
+                // chars can be stored as tight boxes moved by (positive) relx and rely,
+                // so the overview makes room for them (others are laid out as before)
+                if (h + Math.max(ch.getRely(), 0) > this.maxheight) {
+                    this.maxheight = h + Math.max(ch.getRely(), 0);
+                }
                 ch.setOffset(this.totalwidth);
                 pos += 6;
-                this.totalwidth += w + this.add_space;
-                System.arraycopy(buffer, pos, ch.getData(), 0, w * h);
+                this.totalwidth += Math.max(ch.getRelx(), 0) + w + this.add_space;
+                if (!this.lazy) {
+                    System.arraycopy(buffer, pos, ch.getData(), 0, w * h);
+                }
                 pos += w * h;
             }
         }
@@ -221,46 +242,54 @@ public class BMF extends DoomFont {
         }
         this.pos += 2;
         // -- FOR EACH CHAR WRITE THE SPECIFICS
+        // (only the ink bounding box is written, relx and rely are moved to it's corner,
+        // if moved ones don't fit in signed byte the whole char is written as it is)
+        byte[] cell = new byte[0];
         for (DoomFontChar ch : this.chars) {
             BMFChar bmfCh = (BMFChar) ch;
+            GlyphBitmap bitmap = ch.getBitmap();
+            int relx = bmfCh.getRelx() + bitmap.getInkX();
+            int rely = bmfCh.getRely() + bitmap.getInkY();
+            boolean tight = relx >= Byte.MIN_VALUE && relx <= Byte.MAX_VALUE
+                    && rely >= Byte.MIN_VALUE && rely <= Byte.MAX_VALUE;
+            int w = tight ? bitmap.getInkW() : ch.getW();
+            int h = tight ? bitmap.getInkH() : ch.getH();
+            ensureCapacity(pos + 6 + w * h);
             this.buffer[pos] = (byte) ch.getC();
-            this.buffer[pos + 1] = (byte) ch.getW();
-            this.buffer[pos + 2] = (byte) ch.getH();
-            this.buffer[pos + 3] = (byte) bmfCh.getRelx();
-            this.buffer[pos + 4] = (byte) bmfCh.getRely();
+            this.buffer[pos + 1] = (byte) w;
+            this.buffer[pos + 2] = (byte) h;
+            this.buffer[pos + 3] = (byte) (tight ? relx : bmfCh.getRelx());
+            this.buffer[pos + 4] = (byte) (tight ? rely : bmfCh.getRely());
             this.buffer[pos + 5] = (byte) bmfCh.getShift();
             this.pos += 6;
-            System.arraycopy(ch.getData(), 0, buffer, pos, ch.getData().length);
-            this.pos += ch.getData().length;
+            if (tight) {
+                bitmap.copyInkTo(buffer, pos);
+            } else {
+                if (cell.length < w * h) {
+                    cell = new byte[w * h];
+                }
+                bitmap.expandTo(cell);
+                System.arraycopy(cell, 0, buffer, pos, w * h);
+            }
+            this.pos += w * h;
         }
     }
 
-    // generates image displaying all the characters in the BMF font (overriden default)
+    // snapshot of BMF also has the space after each char
     @Override
-    public BufferedImage generateImage(boolean transparency) {
-        BufferedImage image = null;
-        image = new BufferedImage(this.totalwidth + 2, this.maxheight + 2,
-                transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
-        for (DoomFontChar ch : this.chars) {
-            BMFChar bmfCh = (BMFChar) ch;
-            for (int x = 0; x < ch.getW(); x++) {
-                for (int y = 0; y < ch.getH(); y++) {
-                    int e = ch.getW() * y + x;
-                    int index = ch.getData()[e] & 0xFF;
-                    if (index >= 0 && index < this.palette.size()) {
-                        Color color = this.palette.get(index);
-                        if (!color.equals(transparentColor)) {
-                            int px = x + bmfCh.getRelx() + ch.getOffset();
-                            int py = y + bmfCh.getRely();
-                            if (px >= 0 && px < this.totalwidth && py >= 0 && py < this.maxheight) {
-                                image.setRGB(px, py, color.getRGB());
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return image;
+    protected FontSnapshot.Builder snapshotBuilder() {
+        return super.snapshotBuilder().setAddSpace(this.add_space);
+    }
+
+    // BMF char is put relative to it's offset (overriden default)
+    @Override
+    protected int charX(DoomFontChar ch) {
+        return ch.getOffset() + ((BMFChar) ch).getRelx();
+    }
+
+    @Override
+    protected int charY(DoomFontChar ch) {
+        return ((BMFChar) ch).getRely();
     }
 
     // generaters image displaying text, it allows typing in the BMF font (overriden default)
@@ -290,10 +319,14 @@ public class BMF extends DoomFont {
             char c = text.charAt(i);
             BMFChar ch = (BMFChar) this.giveChar(c);
             if (ch != null) {
-                for (int x = 0; x < ch.getW(); x++) {
-                    for (int y = 0; y < ch.getH(); y++) {
-                        int e = ch.getW() * y + x;
-                        int index = ch.getData()[e] & 0xFF;
+                GlyphBitmap bitmap = ch.getBitmap();
+                byte[] row = new byte[bitmap.getInkW()];
+                for (int j = 0; j < bitmap.getInkH(); j++) {
+                    bitmap.getInkRow(j, row); // whole row at once (packed chars are unpacked word by word)
+                    int y = bitmap.getInkY() + j;
+                    for (int k = 0; k < row.length; k++) {
+                        int x = bitmap.getInkX() + k;
+                        int index = row[k] & 0xFF;
                         if (index >= 0 && index < this.palette.size()) {
                             Color color = this.palette.get(index);
                             if (!color.equals(transparentColor)) {
@@ -36,6 +36,11 @@ public class BMFChar extends DoomFontChar {
         super(c, w, h);
     }
 
+    // char which is view into the font buffer (data is copied only if it's asked for)
+    BMFChar(char c, int w, int h, byte[] source, int sourcePos) {
+        super(c, w, h, source, sourcePos, null, false);
+    }
+
     //--------------------------------------------------------------------------
     // B - GETTERS AND SETTERS (TRIVIAL)
     //--------------------------------------------------------------------------    
@@ -16,10 +16,11 @@
  */
 package rs.alexanderstojanovich.dfg.fonts;
 
-import com.sun.jimi.core.util.Packbits;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.util.Arrays;
+import rs.alexanderstojanovich.dfg.util.FontEvent;
+import rs.alexanderstojanovich.dfg.util.FontEvents;
+import rs.alexanderstojanovich.dfg.util.PackBits;
 
 /**
  *
@@ -36,14 +37,34 @@ public class BigFont extends DoomFont {
     //--------------------------------------------------------------------------
     // A1 - CONSTRUCTOR USED WHEN READING FROM THE BINARY FONT FILE
     public BigFont(byte[] buffer) {
+        this(buffer, false);
+    }
+
+    // A1L - SAME AS A1 BUT CHARS ARE LAZY (DECODED WHEN THEY'RE NEEDED)
+    public BigFont(byte[] buffer, boolean lazy) {
         super(buffer);
+        this.lazy = lazy;
+        FontEvent event = FontEvents.begin(FontEvents.LOAD_FONT);
         this.loadFont(); // loads font by creating char data about it
+        endEvent(event, null);
     }
 
     // A2 - CONSTRUCTOR USED WHEN MAKING BIG FONT FROM PRE EXISTING INSTALLED FONT
     public BigFont(BufferedImage image, DoomFontChar[] charVector) {
+        this(image, charVector, false, false);
+    }
+
+    // A3 - SAME AS A2 BUT WITH CHOICE OF SIZE OPTIMAL RLE (SMALLEST LUMP)
+    // AND PALETTE SORTED BY LUMINANCE (LONGER RUNS)
+    public BigFont(BufferedImage image, DoomFontChar[] charVector, boolean optimalRLE, boolean sortPalette) {
         super(image, charVector);
+        this.optimalRLE = optimalRLE;
+        if (sortPalette) {
+            this.sortPalette();
+        }
+        FontEvent event = FontEvents.begin(FontEvents.UNLOAD_FONT);
         this.unloadFont(); // unloads font to the buffer
+        endEvent(event, null);
     }
 
     //--------------------------------------------------------------------------
@@ -112,51 +133,33 @@ public class BigFont extends DoomFont {
             // -- END
             // -- AND THE NEW BEGINNING
             this.chars = new DoomFontChar[numchars];
-            // -- READING CHAR ITSELF, ONE BY ONE 
+            // -- FIRST PHASE: FINDING WHERE EACH CHAR STARTS, ONE BY ONE (DATA IS ONLY SKIPPED)
+            int[] starts = new int[numchars];
+            int totalpixels = 0;
             for (int i = 0; i < numchars; i++) {
                 char c = (char) (firstChar + i);
-                int w = chWidths[i];
+                int w = chWidths[this.constantWidth ? 0 : i];
                 if (w > 0) {
                     int h = maxheight;
                     int numpixels = w * h;
-                    this.chars[i] = new DoomFontChar(c, w, h);
-                    int e = 0; // encoded data index
-                    int len = 0; // length
-                    byte code;
-                    while (numpixels > 0) { // THANKS SLADE FOR HELP!
-                        code = buffer[pos++];
-                        if (code > 0) {
-                            len = code + 1;
-                            // Overflows shouldn't happen!    
-                            if (len > numpixels) {
-                                this.chars = null;
-                                this.error = true;
-                                this.errorMsg = "Error - Character Overflow!";
-                                return;
-                            }
-                            System.arraycopy(buffer, pos, this.chars[i].getData(), e, len);
-                            e += len;
-                            pos += len;
-                            numpixels -= len;
-                        } else if (code != -128) {
-                            len = (-code) + 1;
-                            // Overflows shouldn't happen!
-                            if (len > numpixels) {
-                                this.chars = null;
-                                this.error = true;
-                                this.errorMsg = "Error - Character Overflow!";
-                                return;
-                            }
-                            code = buffer[pos++];
-                            Arrays.fill(this.chars[i].getData(), e, e + len, code);
-                            e += len;
-                            numpixels -= len;
-                        }
+                    this.chars[i] = (this.lazy) ? new DoomFontChar(c, w, h, buffer, pos, null, true) : new DoomFontChar(c, w, h);
+                    starts[i] = pos;
+                    pos = PackBits.skip(buffer, pos, buffer.length, numpixels);
+                    if (pos < 0) {
+                        this.chars = null;
+                        this.error = true;
+                        this.errorMsg = (pos == PackBits.OVERFLOW) ? "Error - Character Overflow!" : "Error - Character data is truncated!";
+                        return;
                     }
                     this.chars[i].setOffset(totalwidth);
                     this.totalwidth += w;
+                    totalpixels += numpixels;
                 }
             }
+            // -- SECOND PHASE: DECODING THE CHARS (IN PARALLEL FOR THE BIG ONES), LAZY ONES ARE DECODED LATER
+            if (!this.lazy) {
+                decodeChars(starts, totalpixels);
+            }
         }
         this.error = (this.maxheight <= 0 || this.palette.isEmpty() || this.chars.length <= 0 || this.chars.length > 256);
         if (this.maxheight <= 0) {
@@ -216,15 +219,7 @@ public class BigFont extends DoomFont {
             pos += 3;
         }
         // -- LOOPING THROUGH ALL THE CHARS -- COMPRESSING DATA -- FINALIZING        
-        for (DoomFontChar ch : this.chars) {
-            if (ch != null) {
-                byte[] temp = new byte[ch.getData().length];
-                // compress the char data and return the compressed size (len)
-                int len = Packbits.packbits(ch.getData(), temp);
-                System.arraycopy(temp, 0, buffer, pos, len);
-                this.pos += len;
-            }
-        }
+        writeChars(null);
     }
     //--------------------------------------------------------------------------
     // D - GETTERS
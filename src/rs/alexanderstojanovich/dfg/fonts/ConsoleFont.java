@@ -16,10 +16,12 @@
  */
 package rs.alexanderstojanovich.dfg.fonts;
 
-import com.sun.jimi.core.util.Packbits;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import rs.alexanderstojanovich.dfg.util.FontEvent;
+import rs.alexanderstojanovich.dfg.util.FontEvents;
+import rs.alexanderstojanovich.dfg.util.PackBits;
 
 /**
  *
@@ -36,14 +38,30 @@ public class ConsoleFont extends DoomFont {
     //--------------------------------------------------------------------------     
     // A1 - CONSTRUCTOR USED WHEN READING FROM THE BINARY FONT FILE
     public ConsoleFont(byte[] buffer) {
+        this(buffer, false);
+    }
+
+    // A1L - SAME AS A1 BUT CHARS ARE LAZY (DECODED WHEN THEY'RE NEEDED)
+    public ConsoleFont(byte[] buffer, boolean lazy) {
         super(buffer);
+        this.lazy = lazy;
+        FontEvent event = FontEvents.begin(FontEvents.LOAD_FONT);
         this.loadFont();
+        endEvent(event, null);
     }
 
     // A2 - CONSTRUCTOR USED WHEN MAKING "BMF" FONT FROM PRE EXISTING INSTALLED FONT    
     public ConsoleFont(BufferedImage image, DoomFontChar[] charVector) {
+        this(image, charVector, false);
+    }
+
+    // A3 - SAME AS A2 BUT WITH CHOICE OF SIZE OPTIMAL RLE (SMALLEST LUMP)
+    public ConsoleFont(BufferedImage image, DoomFontChar[] charVector, boolean optimalRLE) {
         super(image, charVector);
+        this.optimalRLE = optimalRLE;
+        FontEvent event = FontEvents.begin(FontEvents.UNLOAD_FONT);
         this.unloadFont();
+        endEvent(event, null);
     }
 
     //--------------------------------------------------------------------------
@@ -78,58 +96,53 @@ public class ConsoleFont extends DoomFont {
             this.totalwidth = w;
             this.pos = 8;
             this.chars = new DoomFontChar[256];
+            // -- FIRST PHASE: FINDING WHERE EACH CHAR STARTS, ONE BY ONE (DATA IS ONLY SKIPPED)
+            int[] starts = new int[this.chars.length];
+            int numpixels = w * h;
             for (int i = 0; i < this.chars.length; i++) {
-                int numpixels = w * h;
-                byte[] temp = new byte[numpixels]; // temp data
-                int e = 0; // encoded data index
-                int len = 0; // length
-                byte code;
-                while (numpixels > 0) { // THANKS SLADE FOR HELP!
-                    code = buffer[pos++];
-                    if (code > 0) {
-                        len = code + 1;
-                        // Overflows shouldn't happen!    
-                        if (len > numpixels) {
-                            this.chars = null;
-                            this.error = true;
-                            this.errorMsg = "Error - Character Overflow!";
-                            return;
-                        }
-                        System.arraycopy(buffer, pos, temp, e, len);
-                        e += len;
-                        pos += len;
-                        numpixels -= len;
-                    } else if (code != -128) {
-                        len = (-code) + 1;
-                        // Overflows shouldn't happen!
-                        if (len > numpixels) {
-                            this.chars = null;
-                            this.error = true;
-                            this.errorMsg = "Error - Character Overflow!";
-                            return;
-                        }
-                        code = buffer[pos++];
-                        Arrays.fill(temp, e, e + len, code);
-                        e += len;
-                        numpixels -= len;
-                    }
+                starts[i] = pos;
+                pos = PackBits.skip(buffer, pos, buffer.length, numpixels);
+                if (pos < 0) {
+                    this.chars = null;
+                    this.error = true;
+                    this.errorMsg = (pos == PackBits.OVERFLOW) ? "Error - Character Overflow!" : "Error - Character data is truncated!";
+                    return;
                 }
-
-                this.chars[i] = new DoomFontChar((char) i, w, h);
-                this.chars[i].setOffset(this.maxheight);
-                this.maxheight += this.chars[i].getH();
-
-                // Converting grayscale temp info to indexed color info of char data
-                for (int j = 0; j < temp.length; j++) {
-                    Color color = new Color(temp[j] & 0xFF, temp[j] & 0xFF, temp[j] & 0xFF);
-                    if (!this.palette.contains(color)) {
-                        this.palette.add(color);
-                    }
-                    if (!color.equals(transparentColor)) {
-                        this.chars[i].getData()[j] = (byte) palette.indexOf(color);
+            }
+            // gray level -> palette index, filled as gray levels are seen (-1 not seen yet)
+            int[] grayIndex = new int[256];
+            Arrays.fill(grayIndex, -1);
+            if (this.lazy) {
+                // -- LAZY: ONLY GRAY LEVELS ARE COLLECTED (FOR THE PALETTE), CHARS ARE DECODED LATER
+                scanGrays(starts[0], pos, grayIndex);
+                byte[] grayMap = new byte[256];
+                for (int gray = 0; gray < grayMap.length; gray++) {
+                    grayMap[gray] = (byte) Math.max(grayIndex[gray], 0);
+                }
+                for (int i = 0; i < this.chars.length; i++) {
+                    this.chars[i] = new DoomFontChar((char) i, w, h, buffer, starts[i], grayMap, true);
+                    this.chars[i].setOffset(this.maxheight);
+                    this.maxheight += h;
+                }
+            } else {
+                for (int i = 0; i < this.chars.length; i++) {
+                    this.chars[i] = new DoomFontChar((char) i, w, h);
+                    this.chars[i].setOffset(this.maxheight);
+                    this.maxheight += h;
+                }
+                // -- SECOND PHASE: DECODING GRAYSCALE STRAIGHT INTO THE CHAR DATA (IN PARALLEL FOR THE BIG ONES)
+                decodeChars(starts, numpixels * this.chars.length);
+                // -- THIRD PHASE: CONVERTING GRAYSCALE INFO TO INDEXED COLOR INFO OF CHAR DATA (IN PLACE)
+                for (DoomFontChar ch : this.chars) {
+                    byte[] data = ch.getData();
+                    for (int j = 0; j < numpixels; j++) {
+                        int gray = data[j] & 0xFF;
+                        if (grayIndex[gray] < 0) {
+                            addGray(gray, grayIndex);
+                        }
+                        data[j] = (byte) grayIndex[gray];
                     }
                 }
-
             }
             this.error = (this.maxheight <= 0 || this.palette.isEmpty() || this.chars.length <= 0 || this.chars.length > 256);
             if (this.maxheight <= 0) {
@@ -144,6 +157,35 @@ public class ConsoleFont extends DoomFont {
         }
     }
 
+    // adds gray level to the palette, transparent color is always kept at zero index in the data
+    private void addGray(int gray, int[] grayIndex) {
+        Color color = new Color(gray, gray, gray);
+        this.palette.add(color);
+        grayIndex[gray] = color.equals(transparentColor) ? 0 : this.palette.size() - 1;
+    }
+
+    // walks the encoded data (from, to) of all the chars without decoding it and adds gray levels
+    // to the palette in the same order as they appear in the pixels (data is already checked)
+    private void scanGrays(int from, int to, int[] grayIndex) {
+        int p = from;
+        while (p < to) {
+            int code = buffer[p++];
+            int len = 0;
+            if (code >= 0) {
+                len = code + 1;
+            } else if (code != -128) {
+                len = 1;
+            }
+            for (int i = 0; i < len; i++) {
+                int gray = buffer[p + i] & 0xFF;
+                if (grayIndex[gray] < 0) {
+                    addGray(gray, grayIndex);
+                }
+            }
+            p += len;
+        }
+    }
+
     // priv method for the constructor A2 (Console Font) -> Font to Buffer
     private void unloadFont() {
         // -- WRITING HEADER OF THE BIG FONT
@@ -156,21 +198,13 @@ public class ConsoleFont extends DoomFont {
         this.buffer[6] = (byte) (this.chars[0].getH() & 0xFF); // Unsigned value for character width.
         this.buffer[7] = (byte) ((this.chars[0].getH() >> 8) & 0xFF); // In Little-endian format.
         this.pos = 8;
-        // -- LOOPING THROUGH ALL THE CHARS -- COMPRESSING DATA -- FINALIZING        
-        for (DoomFontChar ch : this.chars) {
-            if (ch != null) {
-                byte[] grayscale = new byte[ch.getData().length];
-                for (int i = 0; i < ch.getData().length; i++) {
-                    int index = ch.getData()[i] & 0xFF;
-                    Color col = this.palette.get(index);
-                    grayscale[i] = (byte) (col.getRed() * LUMA_RED_COEFF + col.getGreen() * LUMA_GREEN_COEFF + col.getBlue() * LUMA_BLUE_COEFF);
-                }
-                byte[] temp = new byte[grayscale.length];
-                // compress the char data and return the compressed size (len)
-                int len = Packbits.packbits(grayscale, temp);
-                System.arraycopy(temp, 0, buffer, pos, len);
-                this.pos += len;
-            }
+        // -- CALCULATING LUMA OF EACH PALETTE ENTRY ONCE (palette index -> gray level)
+        byte[] indexGray = new byte[256];
+        for (int i = 0; i < Math.min(this.palette.size(), indexGray.length); i++) {
+            Color col = this.palette.get(i);
+            indexGray[i] = (byte) (col.getRed() * LUMA_RED_COEFF + col.getGreen() * LUMA_GREEN_COEFF + col.getBlue() * LUMA_BLUE_COEFF);
         }
+        // -- LOOPING THROUGH ALL THE CHARS -- COMPRESSING DATA (AS GRAY LEVELS) -- FINALIZING
+        writeChars(indexGray);
     }
 }
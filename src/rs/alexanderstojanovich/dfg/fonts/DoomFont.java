@@ -24,9 +24,17 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import rs.alexanderstojanovich.dfg.util.FontEvent;
+import rs.alexanderstojanovich.dfg.util.FontEvents;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+import rs.alexanderstojanovich.dfg.util.PackBits;
 
 /**
  *
@@ -76,6 +84,19 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
     // but for ConsoleFont offsets are vertical), requires initialisation
     protected boolean verticalOffsets = initVerticalOffsets();
 
+    // Are the chars decoded when they're needed for the first time
+    // (loaded font keeps the buffer and where each char starts in it,
+    // for BMF chars are just views into the buffer)
+    protected boolean lazy = false;
+
+    // Fonts with at least this many pixels are decoded in parallel
+    protected static final int PARALLEL_THRESHOLD = 65536;
+
+    // Use size optimal (but slower) RLE when writing the lump fonts {FON1, FON2}
+    protected boolean optimalRLE = false;
+    // Work array for size optimal RLE (reused for all the chars)
+    private int[] rleWork;
+
     // Helping the user figure out where error occurred
     protected boolean error = false;
     protected String errorMsg;
@@ -93,7 +114,13 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
         this.chars = charVector;
         if (image != null && charVector != null) {
             this.palette.add(transparentColor);
+            // each char is filled in this (reused) cell and only it's ink bounding box is kept
+            byte[] cell = new byte[0];
             for (DoomFontChar ch : charVector) {
+                if (cell.length < ch.getW() * ch.getH()) {
+                    cell = new byte[ch.getW() * ch.getH()];
+                }
+                ch.copyData(cell);
                 for (int x = 0; x < ch.getW(); x++) {
                     for (int y = 0; y < ch.getH(); y++) {
                         int e = ch.getW() * y + x;
@@ -107,7 +134,7 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
                                     if (!palette.contains(color)) { // if it doesn't contain color
                                         palette.add(color); // add the color
                                     }
-                                    ch.getData()[e] = (byte) (Math.min(palette.indexOf(color), 0xFF));
+                                    cell[e] = (byte) (Math.min(palette.indexOf(color), 0xFF));
                                 } else if (palette.size() == PAL_MAX_SIZE) { // if pallete is MAXED OUT, use approximation
                                     if (!palette.contains(color)) {
                                         int mindeviation = 255000;
@@ -120,16 +147,17 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
                                             }
                                         }
                                         if (mindevindex != -1) { // and parsing that color index into the character data
-                                            ch.getData()[e] = (byte) (Math.min(mindevindex, 0xFF));
+                                            cell[e] = (byte) (Math.min(mindevindex, 0xFF));
                                         }
                                     } else {
-                                        ch.getData()[e] = (byte) (Math.min(palette.indexOf(color), 0xFF));
+                                        cell[e] = (byte) (Math.min(palette.indexOf(color), 0xFF));
                                     }
                                 }
                             }
                         }
                     }
                 }
+                ch.setBitmap(GlyphBitmap.of(cell, ch.getW(), ch.getH()));
 
                 this.totalwidth += ch.getW();
                 if (ch.getH() > this.maxheight) {
@@ -165,37 +193,250 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
         return null;
     }
 
-    // generates image displaying all the characters in the font
-    public BufferedImage generateImage(boolean transparency) {
-        BufferedImage image = null;
-        image = new BufferedImage(this.totalwidth + 2, this.maxheight + 2,
-                transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    // makes sure the buffer can take given amount of bytes, otherwise it grows
+    protected void ensureCapacity(int capacity) {
+        if (capacity > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, 2 * this.buffer.length));
+        }
+    }
+
+    // second phase of loading lump fonts {FON1, FON2}: decodes RLE data of each char
+    // (starts are the positions in the buffer found in the first phase) into the char data,
+    // chars don't depend on each other so big fonts are decoded in parallel
+    protected void decodeChars(final int[] starts, int numpixels) {
+        IntStream indices = IntStream.range(0, this.chars.length);
+        if (numpixels >= PARALLEL_THRESHOLD) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> {
+            DoomFontChar ch = chars[i];
+            if (ch != null) {
+                PackBits.decode(buffer, starts[i], buffer.length, ch.getData(), 0, ch.getW() * ch.getH());
+            }
+        });
+    }
+
+    // compresses len bytes of the char data (RLE) to the buffer at current position
+    protected void writeRLE(byte[] data, int len) {
+        ensureCapacity(pos + PackBits.maxEncodedLength(len));
+        if (this.optimalRLE) {
+            if (rleWork == null || rleWork.length < PackBits.workLength(len)) {
+                rleWork = new int[PackBits.workLength(len)];
+            }
+            this.pos += PackBits.encodeOptimal(data, 0, len, buffer, pos, rleWork);
+        } else {
+            this.pos += PackBits.encode(data, 0, len, buffer, pos);
+        }
+    }
+
+    // compresses all the chars (RLE) to the buffer at current position, indexMap changes
+    // palette indices to what's written (null to write them as they are), identical chars 
+    // are encoded only once and their encoded data is copied for the rest of them
+    protected void writeChars(byte[] indexMap) {
+        int maxlen = 0;
         for (DoomFontChar ch : this.chars) {
             if (ch != null) {
-                for (int x = 0; x < ch.getW(); x++) {
-                    for (int y = 0; y < ch.getH(); y++) {
-                        int e = ch.getW() * y + x;
-                        int index = ch.getData()[e] & 0xFF;
-                        if (index >= 0 && index < this.palette.size()) {
-                            Color color = this.palette.get(index);
-                            if (!color.equals(transparentColor)) {
-                                int px, py;
-                                if (this.verticalOffsets) {
-                                    px = x;
-                                    py = y + ch.getOffset();
-                                } else {
-                                    px = x + ch.getOffset();
-                                    py = y;
-                                }
-                                if (px >= 0 && px < this.totalwidth && py >= 0 && py < this.maxheight) {
-                                    image.setRGB(px, py, color.getRGB());
-                                }
-                            }
+                maxlen = Math.max(maxlen, ch.getW() * ch.getH());
+            }
+        }
+        // one cell buffer is used for expanding all the chars (they can be compact)
+        byte[] cell = new byte[maxlen];
+        // bitmap -> where it's encoded data is in the buffer and it's length
+        Map<GlyphBitmap, int[]> encoded = new HashMap<>();
+        for (DoomFontChar ch : this.chars) {
+            if (ch != null) {
+                GlyphBitmap bitmap = ch.getBitmap();
+                int[] done = encoded.get(bitmap);
+                if (done != null) {
+                    ensureCapacity(pos + done[1]);
+                    System.arraycopy(buffer, done[0], buffer, pos, done[1]);
+                    this.pos += done[1];
+                } else {
+                    int len = ch.getW() * ch.getH();
+                    int start = pos;
+                    bitmap.expandTo(cell);
+                    if (indexMap != null) {
+                        for (int i = 0; i < len; i++) {
+                            cell[i] = indexMap[cell[i] & 0xFF];
                         }
                     }
+                    // compress the char data straight into the buffer
+                    writeRLE(cell, len);
+                    encoded.put(bitmap, new int[]{start, pos - start});
+                }
+            }
+        }
+    }
+
+    // sorts the palette by luminance (how ZDoom expects it), so similar shades get
+    // neighbouring indices and RLE finds longer runs, first (transparent) and 
+    // last (unused) entries stay where they are, char data is remapped in one pass
+    protected void sortPalette() {
+        int n = this.palette.size();
+        if (n <= 3 || this.chars == null) {
+            return;
+        }
+        Integer[] order = new Integer[n - 2];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i + 1;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return doomComp.compare(palette.get(o1), palette.get(o2));
+            }
+        });
+        // remap table old index -> new index (indices outside the palette stay same)
+        byte[] remap = new byte[256];
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = (byte) i;
+        }
+        ArrayList<Color> sorted = new ArrayList<Color>(n);
+        sorted.add(this.palette.get(0));
+        for (int i = 0; i < order.length; i++) {
+            sorted.add(this.palette.get(order[i]));
+            remap[order[i]] = (byte) (i + 1);
+        }
+        sorted.add(this.palette.get(n - 1));
+        this.palette = sorted;
+        for (DoomFontChar ch : this.chars) {
+            if (ch != null) {
+                ch.remap(remap);
+            }
+        }
+    }
+
+    // keeps only the ink bounding box of each char (packed if it uses only few colors),
+    // for keeping many loaded fonts in the memory, chars are expanded when they're needed
+    public void compact() {
+        if (this.chars != null) {
+            for (DoomFontChar ch : this.chars) {
+                if (ch != null) {
+                    ch.compact();
+                }
+            }
+        }
+    }
+
+    // compacts the chars and shares identical ones through the pool
+    // (among this font's chars and with other fonts using the same pool)
+    public void intern(GlyphPool pool) {
+        if (this.chars != null) {
+            for (DoomFontChar ch : this.chars) {
+                if (ch != null) {
+                    ch.intern(pool);
+                }
+            }
+        }
+    }
+
+    // gives the chars back to the pool, should be called when the font is not needed anymore
+    public void release() {
+        if (this.chars != null) {
+            for (DoomFontChar ch : this.chars) {
+                if (ch != null) {
+                    ch.release();
+                }
+            }
+        }
+    }
+
+    // ends flight recorder event with what this font has (event is null if JFR isn't there),
+    // bytes are size of the lump read or written so far
+    protected void endEvent(FontEvent event, String source) {
+        FontEvents.end(event, source, this.type, (this.chars != null) ? this.chars.length : 0, this.pos, this.palette.size());
+    }
+
+    // builder filled with everything this font has (used by snapshot)
+    protected FontSnapshot.Builder snapshotBuilder() {
+        FontSnapshot.Builder builder = new FontSnapshot.Builder(this.type)
+                .setPalette(this.palette)
+                .setTransparentColor(this.transparentColor)
+                .setVerticalOffsets(this.verticalOffsets)
+                .setTotalwidth(this.totalwidth)
+                .setMaxheight(this.maxheight);
+        if (this.chars != null) {
+            for (DoomFontChar ch : this.chars) {
+                if (ch instanceof BMFChar) {
+                    BMFChar bmfCh = (BMFChar) ch;
+                    builder.addGlyph(ch.getC(), ch.getOffset(), bmfCh.getRelx(), bmfCh.getRely(), bmfCh.getShift(), ch.getBitmap());
+                } else if (ch != null) {
+                    builder.addGlyph(ch.getC(), ch.getOffset(), ch.getBitmap());
+                }
+            }
+        }
+        return builder;
+    }
+
+    // immutable copy of the font which can be rendered from many threads at once
+    // (font itself can be changed afterwards, snapshot doesn't see it)
+    public FontSnapshot snapshot() {
+        return snapshotBuilder().build();
+    }
+
+    // same as above, identical chars are shared through the pool with the other fonts
+    // (until snapshot is released), used for keeping many fonts in the memory
+    public FontSnapshot snapshot(GlyphPool pool) {
+        return snapshotBuilder().setPool(pool).build();
+    }
+
+    // where the char is put (left and top of it's cell) when all the characters are rendered into single image
+    protected int charX(DoomFontChar ch) {
+        return this.verticalOffsets ? 0 : ch.getOffset();
+    }
+
+    protected int charY(DoomFontChar ch) {
+        return this.verticalOffsets ? ch.getOffset() : 0;
+    }
+
+    // draws only the chars which intersect the region (rx, ry, rw, rh) of the image displaying all the characters,
+    // region is drawn into dst at (0, 0) - so any part of very big font is displayed using small image
+    public void drawRegion(BufferedImage dst, int rx, int ry, int rw, int rh) {
+        int[] rgbs = new int[this.palette.size()];
+        for (int i = 0; i < rgbs.length; i++) {
+            rgbs[i] = this.palette.get(i).getRGB();
+        }
+        int transparentRGB = this.transparentColor.getRGB();
+        // what's visible - the region inside the font (and inside dst)
+        int x1 = Math.max(rx, 0);
+        int y1 = Math.max(ry, 0);
+        int x2 = Math.min(Math.min(rx + rw, this.totalwidth), rx + dst.getWidth());
+        int y2 = Math.min(Math.min(ry + rh, this.maxheight), ry + dst.getHeight());
+        for (DoomFontChar ch : this.chars) {
+            if (ch == null) {
+                continue;
+            }
+            int cx = charX(ch);
+            int cy = charY(ch);
+            if (cx >= x2 || cx + ch.getW() <= x1 || cy >= y2 || cy + ch.getH() <= y1) {
+                continue; // char is not in the region
+            }
+            // only the ink part of the char is visited, the rest is transparent
+            GlyphBitmap bitmap = ch.getBitmap();
+            byte[] row = new byte[bitmap.getInkW()];
+            for (int j = 0; j < bitmap.getInkH(); j++) {
+                int py = cy + bitmap.getInkY() + j;
+                if (py < y1 || py >= y2) {
+                    continue;
+                }
+                bitmap.getInkRow(j, row); // whole row at once (packed chars are unpacked word by word)
+                for (int k = 0; k < row.length; k++) {
+                    int px = cx + bitmap.getInkX() + k;
+                    int index = row[k] & 0xFF;
+                    if (px >= x1 && px < x2 && index < rgbs.length && rgbs[index] != transparentRGB) {
+                        dst.setRGB(px - rx, py - ry, rgbs[index]);
+                    }
                 }
             }
         }
+    }
+
+    // generates image displaying all the characters in the font
+    public BufferedImage generateImage(boolean transparency) {
+        BufferedImage image = null;
+        image = new BufferedImage(this.totalwidth + 2, this.maxheight + 2,
+                transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        drawRegion(image, 0, 0, this.totalwidth, this.maxheight);
         return image;
     }
 
@@ -226,10 +467,14 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
             char c = text.charAt(i);
             DoomFontChar ch = this.giveChar(c);
             if (ch != null) {
-                for (int x = 0; x < ch.getW(); x++) {
-                    for (int y = 0; y < ch.getH(); y++) {
-                        int e = ch.getW() * y + x;
-                        int index = ch.getData()[e] & 0xFF;
+                GlyphBitmap bitmap = ch.getBitmap();
+                byte[] row = new byte[bitmap.getInkW()];
+                for (int j = 0; j < bitmap.getInkH(); j++) {
+                    bitmap.getInkRow(j, row); // whole row at once (packed chars are unpacked word by word)
+                    int y = bitmap.getInkY() + j;
+                    for (int k = 0; k < row.length; k++) {
+                        int x = bitmap.getInkX() + k;
+                        int index = row[k] & 0xFF;
                         if (index >= 0 && index < this.palette.size()) {
                             Color color = this.palette.get(index);
                             if (!color.equals(transparentColor)) {
@@ -267,6 +512,8 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
                     break;
             }
         }
+        Metrics.Timer timer = Metrics.start("font.save");
+        FontEvent event = FontEvents.begin(FontEvents.SAVE_TO_FILE);
         FileOutputStream fos = null;
         try {
             fos = new FileOutputStream(file);
@@ -284,6 +531,8 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
                     Logger.getLogger(DoomFont.class.getName()).log(Level.SEVERE, null, ex);
                 }
             }
+            timer.stop();
+            endEvent(event, file.getName());
         }
         return success;
     }
@@ -293,14 +542,28 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
     //--------------------------------------------------------------------------
     // polymorphic way of loading the file, it returns font based on the it's header, that's why it's static
     public static DoomFont loadFromFile(File file) {
+        return loadFromFile(file, false);
+    }
+
+    // same as above, lump fonts {FON1, FON2} can be lazy (chars decoded when they're needed)
+    // and BMF chars can be views into the buffer (nothing is copied)
+    public static DoomFont loadFromFile(File file, boolean lazy) {
         DoomFont doomFont = null;
-        byte[] buffer = new byte[65536]; // 64K buffer oh-yeah!
+        byte[] buffer = null;
         if (file != null) {
             if (file.exists() && (file.getName().contains(".lmp") || file.getName().contains(".bmf"))) {
+                Metrics.Timer timer = Metrics.start("font.load");
+                FontEvent event = FontEvents.begin(FontEvents.LOAD_FROM_FILE);
                 FileInputStream fis = null;
                 try {
+                    // 64K buffer oh-yeah! (or whole file for the big high resolution fonts)
+                    buffer = new byte[(int) Math.max(file.length(), 65536)];
                     fis = new FileInputStream(file);
-                    fis.read(buffer);
+                    int len = 0;
+                    int n;
+                    while (len < buffer.length && (n = fis.read(buffer, len, buffer.length - len)) > 0) {
+                        len += n;
+                    }
                 } catch (FileNotFoundException ex) {
                     Logger.getLogger(DoomFont.class.getName()).log(Level.SEVERE, null, ex);
                 } catch (IOException ex) {
@@ -314,24 +577,66 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
                         }
                     }
                 }
-                // POLYMORPHIC WAY OF MAKING FONTS
-                // depending on the header {FON1, FON2 or BMF} 
-                // it returns one font in that set or it stays null
-                if (buffer[0] == 'F' && buffer[1] == 'O' && buffer[2] == 'N' && buffer[3] == '1') {
-                    // The characters 'F', 'O', 'N', and '1'.
-                    doomFont = new ConsoleFont(buffer);
-                } else if (buffer[0] == 'F' && buffer[1] == 'O' && buffer[2] == 'N' && buffer[3] == '2') {
-                    // The characters 'F', 'O', 'N', and '2'.
-                    doomFont = new BigFont(buffer);
-                } else if (buffer[0] == (byte) 0xE1 && buffer[1] == (byte) 0xE6 && buffer[2] == (byte) 0xD5 && buffer[3] == (byte) 0x1A) {
-                    // BMF Magic Header
-                    doomFont = new BMF(buffer);
+                doomFont = loadFromBuffer(buffer, lazy);
+                timer.stop();
+                if (doomFont != null) {
+                    doomFont.endEvent(event, file.getName());
+                } else { // not a font
+                    FontEvents.end(event, file.getName(), null, 0, file.length(), 0);
                 }
             }
         }
         return doomFont;
     }
 
+    // polymorphic way of making the font from the buffer already in memory (file or archive entry)
+    public static DoomFont loadFromBuffer(byte[] buffer) {
+        return loadFromBuffer(buffer, false);
+    }
+
+    // same as above, lump fonts {FON1, FON2} can be lazy (chars decoded when they're needed)
+    // and BMF chars can be views into the buffer (nothing is copied)
+    public static DoomFont loadFromBuffer(byte[] buffer, boolean lazy) {
+        DoomFont doomFont = null;
+        // POLYMORPHIC WAY OF MAKING FONTS
+        // depending on the header {FON1, FON2 or BMF} 
+        // it returns one font in that set or it stays null
+        String type = typeOf(buffer);
+        if (type != null) {
+            switch (type) {
+                case "FON1":
+                    doomFont = new ConsoleFont(buffer, lazy);
+                    break;
+                case "FON2":
+                    doomFont = new BigFont(buffer, lazy);
+                    break;
+                case "BMF":
+                    doomFont = new BMF(buffer, lazy);
+                    break;
+            }
+        }
+        return doomFont;
+    }
+
+    // font type in set {FON1, FON2, BMF} recognized from the header (first four bytes are enough),
+    // null if it's not a font
+    public static String typeOf(byte[] header) {
+        String type = null;
+        if (header != null && header.length >= 4) {
+            if (header[0] == 'F' && header[1] == 'O' && header[2] == 'N' && header[3] == '1') {
+                // The characters 'F', 'O', 'N', and '1'.
+                type = "FON1";
+            } else if (header[0] == 'F' && header[1] == 'O' && header[2] == 'N' && header[3] == '2') {
+                // The characters 'F', 'O', 'N', and '2'.
+                type = "FON2";
+            } else if (header[0] == (byte) 0xE1 && header[1] == (byte) 0xE6 && header[2] == (byte) 0xD5 && header[3] == (byte) 0x1A) {
+                // BMF Magic Header
+                type = "BMF";
+            }
+        }
+        return type;
+    }
+
     //--------------------------------------------------------------------------
     // E - GETTERS
     //--------------------------------------------------------------------------
@@ -367,6 +672,14 @@ public abstract class DoomFont { // Doom Font is an abstract class, we don't kno
         return pos;
     }
 
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public boolean isOptimalRLE() {
+        return optimalRLE;
+    }
+
     public boolean isVerticalOffsets() {
         return verticalOffsets;
     }
@@ -16,6 +16,10 @@
  */
 package rs.alexanderstojanovich.dfg.fonts;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import rs.alexanderstojanovich.dfg.util.PackBits;
+
 /**
  *
  * @author Alexander Stojanovich <coas91@rocketmail.com>
@@ -28,7 +32,19 @@ public class DoomFontChar {
     protected int w, h;
     // Character image as raw pixels in row-major format
     // Data says on which pixel is which entry in the palette of the font
-    protected byte[] data;
+    // (it's null for lazy, compact or blank char until it's needed for the first time)
+    protected volatile byte[] data;
+    // Compact char - only the ink bounding box is kept (null if the char is not compact)
+    private volatile GlyphBitmap bitmap;
+    // Pool which the bitmap comes from (null if the char is not pooled)
+    private GlyphPool pool;
+    // Lazy char source - the font buffer with the char data and where it starts
+    private byte[] source;
+    private int sourcePos;
+    // Is the source encoded (RLE) or it's plain char data (BMF)
+    private boolean sourceEncoded;
+    // Maps decoded bytes to palette indices (Console Font has gray levels), null if not needed
+    private byte[] sourceMap;
     // Used for remembering the offset of the char
     // When rendering the chars from left to right 
     // (or from up to down for Console font)
@@ -42,11 +58,150 @@ public class DoomFontChar {
         this.c = c;
         this.w = w;
         this.h = h;
-        this.data = new byte[w * h];
+        // data is allocated the first time it's needed (blank chars cost nothing)
+    }
+
+    // lazy char which is decoded from the font buffer the first time it's needed
+    DoomFontChar(char c, int w, int h, byte[] source, int sourcePos, byte[] sourceMap, boolean sourceEncoded) {
+        this.c = c;
+        this.w = w;
+        this.h = h;
+        this.source = source;
+        this.sourcePos = sourcePos;
+        this.sourceMap = sourceMap;
+        this.sourceEncoded = sourceEncoded;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // decodes lazy char data (source is checked when the font is loaded),
+    // expands compact char or allocates data of blank char
+    private synchronized void decode() {
+        if (this.data == null) {
+            byte[] temp = new byte[w * h];
+            if (bitmap != null) {
+                bitmap.expandTo(temp);
+                release();
+                this.bitmap = null;
+            } else if (source == null) {
+                // blank char, all zeros
+            } else if (sourceEncoded) {
+                PackBits.decode(source, sourcePos, source.length, temp, 0, temp.length);
+            } else {
+                System.arraycopy(source, sourcePos, temp, 0, temp.length);
+            }
+            if (sourceMap != null) {
+                for (int i = 0; i < temp.length; i++) {
+                    temp[i] = sourceMap[temp[i] & 0xFF];
+                }
+            }
+            this.data = temp;
+            this.source = null;
+            this.sourceMap = null;
+        }
+    }
+
+    // pixels of the char as read-only view (w * h bytes, row-major), nothing is copied,
+    // for lazy char with plain source (BMF) it's view into the font buffer itself,
+    // compact char stays compact (it's expanded into the copy)
+    public synchronized ByteBuffer getPixels() {
+        if (data == null && source != null && !sourceEncoded && sourceMap == null) {
+            return ByteBuffer.wrap(source, sourcePos, w * h).slice().asReadOnlyBuffer();
+        }
+        if (bitmap != null) {
+            byte[] temp = new byte[w * h];
+            bitmap.expandTo(temp);
+            return ByteBuffer.wrap(temp).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(getData()).asReadOnlyBuffer();
+    }
+
+    // pixels of the char with the ink bounding box, for rendering only the ink part,
+    // nothing is copied for compact, decoded or BMF lazy char
+    public synchronized GlyphBitmap getBitmap() {
+        if (bitmap != null) {
+            return bitmap;
+        }
+        if (data == null && source != null && !sourceEncoded && sourceMap == null) {
+            return GlyphBitmap.wrap(source, sourcePos, w, h);
+        }
+        if (data == null && source == null) {
+            return GlyphBitmap.blank(w, h);
+        }
+        return GlyphBitmap.wrap(getData(), 0, w, h);
+    }
+
+    // keeps only the ink bounding box of the char, the rest is dropped
+    // (getData expands it back to the whole char when it's needed)
+    public synchronized void compact() {
+        if (bitmap == null) {
+            this.bitmap = GlyphBitmap.of(getData(), w, h);
+            this.data = null;
+        }
+    }
+
+    // compacts the char and shares it's bitmap with the identical chars using the same pool
+    public synchronized void intern(GlyphPool pool) {
+        if (this.pool == null) {
+            compact();
+            this.bitmap = pool.intern(bitmap);
+            this.pool = pool;
+        }
+    }
+
+    // gives the bitmap back to the pool (char keeps it as it is)
+    public synchronized void release() {
+        if (pool != null) {
+            pool.release(bitmap);
+            this.pool = null;
+        }
+    }
+
+    // writes the whole char (w * h bytes, row-major) into dst without keeping it expanded,
+    // used by the formats which need full chars {FON1, FON2}
+    public synchronized void copyData(byte[] dst) {
+        if (data == null && bitmap == null && source == null) {
+            Arrays.fill(dst, 0, w * h, (byte) 0);
+        } else {
+            getBitmap().expandTo(dst);
+        }
+    }
+
+    // changes palette indices of the char through the table (zero must stay zero)
+    public synchronized void remap(byte[] table) {
+        if (bitmap != null) {
+            GlyphPool temp = pool;
+            release();
+            this.bitmap = bitmap.remap(table);
+            if (temp != null) { // stays in the same pool
+                intern(temp);
+            }
+        } else {
+            byte[] temp = getData();
+            for (int e = 0; e < temp.length; e++) {
+                temp[e] = table[temp[e] & 0xFF];
+            }
+        }
+    }
+
+    // is char data in the memory (always true for the chars which are not lazy)
+    public boolean isDecoded() {
+        return data != null || bitmap != null;
+    }
+
+    // is only the ink bounding box kept
+    public boolean isCompact() {
+        return bitmap != null;
+    }
+
+    // is the bitmap shared through the pool
+    public synchronized boolean isPooled() {
+        return pool != null;
     }
 
     //--------------------------------------------------------------------------
-    // B - GETTERS AND SETTERS (TRIVIAL)
+    // C - GETTERS AND SETTERS (TRIVIAL)
     //--------------------------------------------------------------------------
     public char getC() {
         return c;
@@ -72,12 +227,29 @@ public class DoomFontChar {
         this.h = h;
     }
 
+    // char data which can be changed, compact char is expanded for good
+    // (readers use getBitmap, getPixels or copyData which keep it compact)
     public byte[] getData() {
+        if (data == null) {
+            decode();
+        }
         return data;
     }
 
-    public void setData(byte[] data) {
+    public synchronized void setData(byte[] data) {
+        release();
         this.data = data;
+        this.bitmap = null;
+        this.source = null;
+        this.sourceMap = null;
+    }
+
+    public synchronized void setBitmap(GlyphBitmap bitmap) {
+        release();
+        this.bitmap = bitmap;
+        this.data = null;
+        this.source = null;
+        this.sourceMap = null;
     }
 
     public int getOffset() {
@@ -0,0 +1,399 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.fonts;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public final class FontSnapshot { // immutable copy of the font, it can be rendered from many threads at once
+
+    // Font type in set {FON1, FON2, BMF}
+    private final String type;
+    // Palette of colors (index 0 is transparent) and same colors as RGB values
+    private final List<Color> palette;
+    private final int[] rgbs;
+    // Color which is not drawn
+    private final Color transparentColor;
+    // Are offsets vertical (Console Font)
+    private final boolean verticalOffsets;
+    // Space after each character (BMF only)
+    private final int addSpace;
+    // Values for display
+    private final int totalwidth;
+    private final int maxheight;
+    // Chars of the font in their order and the first char for each character
+    private final List<Glyph> glyphs;
+    private final Map<Character, Glyph> glyphMap;
+    // Pool which the glyph bitmaps are interned into (null if they're not) and are they given back
+    private final GlyphPool pool;
+    private boolean released = false;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    private FontSnapshot(Builder builder) {
+        this.type = builder.type;
+        this.palette = Collections.unmodifiableList(new ArrayList<>(builder.palette));
+        this.rgbs = new int[this.palette.size()];
+        for (int i = 0; i < this.rgbs.length; i++) {
+            this.rgbs[i] = this.palette.get(i).getRGB();
+        }
+        this.transparentColor = builder.transparentColor;
+        this.verticalOffsets = builder.verticalOffsets;
+        this.addSpace = builder.addSpace;
+        this.pool = builder.pool;
+        List<Glyph> temps = new ArrayList<>(builder.glyphs.size());
+        for (Glyph glyph : builder.glyphs) {
+            // identical bitmaps (in this font and the other ones using the pool) are kept only once
+            temps.add((pool == null) ? glyph : new Glyph(glyph.c, glyph.w, glyph.h, glyph.offset,
+                    glyph.relx, glyph.rely, glyph.shift, pool.intern(glyph.bitmap)));
+        }
+        this.glyphs = Collections.unmodifiableList(temps);
+        Map<Character, Glyph> temp = new HashMap<>();
+        int tw = 0, mh = 0;
+        for (Glyph glyph : this.glyphs) {
+            if (!temp.containsKey(glyph.c)) {
+                temp.put(glyph.c, glyph);
+            }
+            if (this.verticalOffsets) {
+                tw = Math.max(tw, glyph.w);
+                mh = Math.max(mh, glyph.offset + glyph.h);
+            } else {
+                tw = Math.max(tw, glyph.offset + glyph.relx + glyph.w);
+                mh = Math.max(mh, glyph.rely + glyph.h);
+            }
+        }
+        this.glyphMap = temp;
+        // if they're not given, values for display are what all the chars take
+        this.totalwidth = (builder.totalwidth > 0) ? builder.totalwidth : tw;
+        this.maxheight = (builder.maxheight > 0) ? builder.maxheight : mh;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - GLYPH (CHAR OF THE SNAPSHOT)
+    //--------------------------------------------------------------------------
+    public static final class Glyph {
+
+        // Which character it is
+        private final char c;
+        // Character image width and height
+        private final int w, h;
+        // Offset of the char when all the chars are rendered into single image
+        private final int offset;
+        // BMF only - offset relative to the cursor and cursor shift after the char
+        private final int relx, rely, shift;
+        // Pixels of the char (never a view into the font data)
+        private final GlyphBitmap bitmap;
+
+        private Glyph(char c, int w, int h, int offset, int relx, int rely, int shift, GlyphBitmap bitmap) {
+            this.c = c;
+            this.w = w;
+            this.h = h;
+            this.offset = offset;
+            this.relx = relx;
+            this.rely = rely;
+            this.shift = shift;
+            this.bitmap = bitmap.detach();
+        }
+
+        public char getC() {
+            return c;
+        }
+
+        public int getW() {
+            return w;
+        }
+
+        public int getH() {
+            return h;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getRelx() {
+            return relx;
+        }
+
+        public int getRely() {
+            return rely;
+        }
+
+        public int getShift() {
+            return shift;
+        }
+
+        public GlyphBitmap getBitmap() {
+            return bitmap;
+        }
+
+    }
+
+    //--------------------------------------------------------------------------
+    // C - BUILDER (FOR DERIVING OR COPYING THE FONT)
+    //--------------------------------------------------------------------------
+    public static final class Builder {
+
+        private final String type;
+        private final List<Color> palette = new ArrayList<>();
+        private Color transparentColor = Color.BLACK;
+        private boolean verticalOffsets = false;
+        private int addSpace = 0;
+        private int totalwidth = 0;
+        private int maxheight = 0;
+        private final List<Glyph> glyphs = new ArrayList<>();
+        private GlyphPool pool = null;
+
+        public Builder(String type) {
+            this.type = type;
+        }
+
+        public Builder setPalette(List<Color> palette) {
+            this.palette.clear();
+            this.palette.addAll(palette);
+            return this;
+        }
+
+        public Builder addColor(Color color) {
+            this.palette.add(color);
+            return this;
+        }
+
+        public Builder setTransparentColor(Color transparentColor) {
+            this.transparentColor = transparentColor;
+            return this;
+        }
+
+        public Builder setVerticalOffsets(boolean verticalOffsets) {
+            this.verticalOffsets = verticalOffsets;
+            return this;
+        }
+
+        public Builder setAddSpace(int addSpace) {
+            this.addSpace = addSpace;
+            return this;
+        }
+
+        // zero (default) means it's computed from the chars
+        public Builder setTotalwidth(int totalwidth) {
+            this.totalwidth = totalwidth;
+            return this;
+        }
+
+        // zero (default) means it's computed from the chars
+        public Builder setMaxheight(int maxheight) {
+            this.maxheight = maxheight;
+            return this;
+        }
+
+        public Builder addGlyph(char c, int offset, GlyphBitmap bitmap) {
+            return addGlyph(c, offset, 0, 0, bitmap.getW(), bitmap);
+        }
+
+        // BMF char with it's relative offset and shift
+        public Builder addGlyph(char c, int offset, int relx, int rely, int shift, GlyphBitmap bitmap) {
+            this.glyphs.add(new Glyph(c, bitmap.getW(), bitmap.getH(), offset, relx, rely, shift, bitmap));
+            return this;
+        }
+
+        // glyph bitmaps are interned into the pool (null - default means they're not),
+        // snapshot must be released when it's not needed anymore
+        public Builder setPool(GlyphPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public FontSnapshot build() {
+            return new FontSnapshot(this);
+        }
+
+    }
+
+    //--------------------------------------------------------------------------
+    // D - RENDERING METHODS
+    //--------------------------------------------------------------------------
+    // draws ink part of the glyph into the image at (ox, oy), clipped to (cw, ch)
+    private void drawGlyph(BufferedImage image, Glyph glyph, int ox, int oy, int cw, int ch) {
+        GlyphBitmap bitmap = glyph.bitmap;
+        byte[] row = new byte[bitmap.getInkW()];
+        int transparentRGB = transparentColor.getRGB();
+        for (int j = 0; j < bitmap.getInkH(); j++) {
+            bitmap.getInkRow(j, row);
+            int py = oy + bitmap.getInkY() + j;
+            if (py < 0 || py >= ch) {
+                continue;
+            }
+            for (int k = 0; k < row.length; k++) {
+                int index = row[k] & 0xFF;
+                if (index < rgbs.length && rgbs[index] != transparentRGB) {
+                    int px = ox + bitmap.getInkX() + k;
+                    if (px >= 0 && px < cw) {
+                        image.setRGB(px, py, rgbs[index]);
+                    }
+                }
+            }
+        }
+    }
+
+    // where the glyph is put (left and top of it's cell) when all the characters are rendered into single image
+    private int glyphX(Glyph glyph) {
+        return this.verticalOffsets ? 0 : glyph.offset + glyph.relx;
+    }
+
+    private int glyphY(Glyph glyph) {
+        return this.verticalOffsets ? glyph.offset : glyph.rely;
+    }
+
+    // draws only the glyphs which intersect the region (rx, ry, rw, rh) of the image displaying all the characters,
+    // region is drawn into dst at (0, 0) - same as DoomFont.drawRegion, but it's safe from any thread
+    public void drawRegion(BufferedImage dst, int rx, int ry, int rw, int rh) {
+        int transparentRGB = this.transparentColor.getRGB();
+        // what's visible - the region inside the font (and inside dst)
+        int x1 = Math.max(rx, 0);
+        int y1 = Math.max(ry, 0);
+        int x2 = Math.min(Math.min(rx + rw, this.totalwidth), rx + dst.getWidth());
+        int y2 = Math.min(Math.min(ry + rh, this.maxheight), ry + dst.getHeight());
+        for (Glyph glyph : this.glyphs) {
+            int gx = glyphX(glyph);
+            int gy = glyphY(glyph);
+            if (gx >= x2 || gx + glyph.w <= x1 || gy >= y2 || gy + glyph.h <= y1) {
+                continue; // glyph is not in the region
+            }
+            GlyphBitmap bitmap = glyph.bitmap;
+            byte[] row = new byte[bitmap.getInkW()];
+            for (int j = 0; j < bitmap.getInkH(); j++) {
+                int py = gy + bitmap.getInkY() + j;
+                if (py < y1 || py >= y2) {
+                    continue;
+                }
+                bitmap.getInkRow(j, row);
+                for (int k = 0; k < row.length; k++) {
+                    int px = gx + bitmap.getInkX() + k;
+                    int index = row[k] & 0xFF;
+                    if (px >= x1 && px < x2 && index < rgbs.length && rgbs[index] != transparentRGB) {
+                        dst.setRGB(px - rx, py - ry, rgbs[index]);
+                    }
+                }
+            }
+        }
+    }
+
+    // generates image displaying all the characters in the font
+    public BufferedImage generateImage(boolean transparency) {
+        BufferedImage image = new BufferedImage(this.totalwidth + 2, this.maxheight + 2,
+                transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        drawRegion(image, 0, 0, this.totalwidth, this.maxheight);
+        return image;
+    }
+
+    // generates image displaying text, it allows typing in the font
+    public BufferedImage generateImage(boolean transparency, String text) {
+        // 1. initializing
+        if (text.isEmpty()) {
+            return null;
+        }
+        boolean bmf = "BMF".equals(this.type);
+        int textwidth = 0;
+        int[] offsets = new int[text.length()];
+        // 2. calculating
+        for (int i = 0; i < text.length(); i++) {
+            offsets[i] = textwidth;
+            Glyph glyph = this.glyphMap.get(text.charAt(i));
+            if (glyph != null) {
+                textwidth += bmf ? glyph.shift + this.addSpace : glyph.w;
+            }
+        }
+        int height = (this.verticalOffsets && !this.glyphs.isEmpty()) ? this.glyphs.get(0).h : this.maxheight;
+        // 3. creating image
+        BufferedImage image = new BufferedImage(textwidth + 2, height + 2,
+                transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        // 4. writing to pixels of the image
+        for (int i = 0; i < text.length(); i++) {
+            Glyph glyph = this.glyphMap.get(text.charAt(i));
+            if (glyph != null) {
+                drawGlyph(image, glyph, offsets[i] + glyph.relx, glyph.rely, textwidth, this.maxheight);
+            }
+        }
+        return image;
+    }
+
+    // gives the glyph bitmaps back to the pool (only the first time), snapshot can still
+    // be rendered afterwards (renders which are in progress don't have to be waited for)
+    public synchronized void release() {
+        if (pool != null && !released) {
+            for (Glyph glyph : this.glyphs) {
+                pool.release(glyph.bitmap);
+            }
+            this.released = true;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // E - GETTERS
+    //--------------------------------------------------------------------------
+    public String getType() {
+        return type;
+    }
+
+    public List<Color> getPalette() {
+        return palette;
+    }
+
+    public Color getTransparentColor() {
+        return transparentColor;
+    }
+
+    public boolean isVerticalOffsets() {
+        return verticalOffsets;
+    }
+
+    public int getAddSpace() {
+        return addSpace;
+    }
+
+    public int getTotalwidth() {
+        return totalwidth;
+    }
+
+    public int getMaxheight() {
+        return maxheight;
+    }
+
+    public List<Glyph> getGlyphs() {
+        return glyphs;
+    }
+
+    public GlyphPool getPool() {
+        return pool;
+    }
+
+    // first glyph of the character or null if font doesn't have it
+    public Glyph getGlyph(char c) {
+        return glyphMap.get(c);
+    }
+
+}
@@ -0,0 +1,369 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.fonts;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class GlyphBitmap { // pixels of the char cell, only the ink (non zero) part of it is stored
+
+    // Character cell width and height
+    private final int w, h;
+    // Ink bounding box inside the cell (everything outside of it is index zero - transparent)
+    private final int inkX, inkY, inkW, inkH;
+    // Ink pixels in row-major format (palette indices), starting at inkPos,
+    // it's either own array or view into the char data / font buffer (null if packed)
+    private final byte[] ink;
+    private final int inkPos;
+    // Packed ink pixels - 1, 2 or 4 bits per pixel (local indices), 64 / bits pixels in each word,
+    // first pixel in the lowest bits (null if not packed)
+    private final long[] packed;
+    private final int bits;
+    // Local index -> palette index (local index zero is always transparent)
+    private final byte[] table;
+    // Content hash (computed when it's needed for the first time, zero until then)
+    private int hash;
+    // Is it view into someone else's array (which can change)
+    private final boolean view;
+
+    // Chars with at most this many different palette indices (zero included) are packed
+    public static final int MAX_PACKED_COLORS = 16;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    private GlyphBitmap(int w, int h, int inkX, int inkY, int inkW, int inkH, byte[] ink, int inkPos, boolean view) {
+        this.w = w;
+        this.h = h;
+        this.inkX = inkX;
+        this.inkY = inkY;
+        this.inkW = inkW;
+        this.inkH = inkH;
+        this.ink = ink;
+        this.inkPos = inkPos;
+        this.packed = null;
+        this.bits = 8;
+        this.table = null;
+        this.view = view;
+    }
+
+    private GlyphBitmap(int w, int h, int inkX, int inkY, int inkW, int inkH, long[] packed, int bits, byte[] table) {
+        this.w = w;
+        this.h = h;
+        this.inkX = inkX;
+        this.inkY = inkY;
+        this.inkW = inkW;
+        this.inkH = inkH;
+        this.ink = null;
+        this.inkPos = 0;
+        this.packed = packed;
+        this.bits = bits;
+        this.table = table;
+        this.view = false;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - STATIC METHODS
+    //--------------------------------------------------------------------------
+    // view of the whole cell (w * h bytes of data from pos), nothing is copied
+    public static GlyphBitmap wrap(byte[] data, int pos, int w, int h) {
+        return new GlyphBitmap(w, h, 0, 0, w, h, data, pos, true);
+    }
+
+    // cell without any ink
+    public static GlyphBitmap blank(int w, int h) {
+        return new GlyphBitmap(w, h, 0, 0, 0, 0, new byte[0], 0, false);
+    }
+
+    // compact copy of the cell data which keeps only tight ink bounding box,
+    // chars using only few palette indices are packed (1, 2 or 4 bits per pixel)
+    public static GlyphBitmap of(byte[] data, int w, int h) {
+        int minX = w, minY = h, maxX = -1, maxY = -1;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if (data[y * w + x] != 0) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (maxX < 0) { // no ink at all (blank char)
+            return blank(w, h);
+        }
+        int iw = maxX - minX + 1;
+        int ih = maxY - minY + 1;
+        // 1. finding which palette indices are used (local index is given in order of appearance)
+        int[] local = new int[256];
+        Arrays.fill(local, -1);
+        local[0] = 0;
+        int colors = 1;
+        for (int y = minY; y <= maxY && colors <= MAX_PACKED_COLORS; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                int index = data[y * w + x] & 0xFF;
+                if (local[index] == -1) {
+                    local[index] = colors++;
+                }
+            }
+        }
+        if (colors > MAX_PACKED_COLORS) { // too many colors, one byte per pixel
+            byte[] ink = new byte[iw * ih];
+            for (int y = 0; y < ih; y++) {
+                System.arraycopy(data, (minY + y) * w + minX, ink, y * iw, iw);
+            }
+            return new GlyphBitmap(w, h, minX, minY, iw, ih, ink, 0, false);
+        }
+        // 2. packing the local indices, rows follow each other without padding
+        int bits = (colors <= 2) ? 1 : (colors <= 4) ? 2 : 4;
+        byte[] table = new byte[1 << bits];
+        for (int i = 0; i < local.length; i++) {
+            if (local[i] > 0) {
+                table[local[i]] = (byte) i;
+            }
+        }
+        int ppw = 64 / bits;
+        long[] packed = new long[(iw * ih + ppw - 1) / ppw];
+        int n = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++, n++) {
+                packed[n / ppw] |= (long) local[data[y * w + x] & 0xFF] << ((n % ppw) * bits);
+            }
+        }
+        return new GlyphBitmap(w, h, minX, minY, iw, ih, packed, bits, table);
+    }
+
+    //--------------------------------------------------------------------------
+    // C - METHODS
+    //--------------------------------------------------------------------------
+    // unpacks count pixels starting from ink pixel "from" into dst (as palette indices),
+    // whole word is read at once and zero words (transparent pixels) are filled at once
+    private void unpack(int from, byte[] dst, int dstOff, int count) {
+        final int ppw = 64 / bits;
+        final int mask = (1 << bits) - 1;
+        int wi = from / ppw;
+        int sh = (from % ppw) * bits;
+        long word = packed[wi] >>> sh;
+        int e = dstOff;
+        final int end = dstOff + count;
+        while (e < end) {
+            if (sh == 64) {
+                word = packed[++wi];
+                sh = 0;
+                if (word == 0L && end - e >= ppw) {
+                    Arrays.fill(dst, e, e + ppw, (byte) 0);
+                    e += ppw;
+                    sh = 64;
+                    continue;
+                }
+            }
+            dst[e++] = table[(int) word & mask];
+            word >>>= bits;
+            sh += bits;
+        }
+    }
+
+    // palette index at (x, y) of the cell
+    public int get(int x, int y) {
+        x -= inkX;
+        y -= inkY;
+        if (x < 0 || x >= inkW || y < 0 || y >= inkH) {
+            return 0;
+        }
+        int n = y * inkW + x;
+        if (packed != null) {
+            int ppw = 64 / bits;
+            return table[(int) (packed[n / ppw] >>> ((n % ppw) * bits)) & ((1 << bits) - 1)] & 0xFF;
+        }
+        return ink[inkPos + n] & 0xFF;
+    }
+
+    // writes row of the ink box (inkW palette indices) into dst, row is in [0, inkH)
+    public void getInkRow(int row, byte[] dst) {
+        if (packed != null) {
+            unpack(row * inkW, dst, 0, inkW);
+        } else {
+            System.arraycopy(ink, inkPos + row * inkW, dst, 0, inkW);
+        }
+    }
+
+    // writes the whole cell (w * h bytes) into dst
+    public void expandTo(byte[] dst) {
+        Arrays.fill(dst, 0, w * h, (byte) 0);
+        for (int y = 0; y < inkH; y++) {
+            if (packed != null) {
+                unpack(y * inkW, dst, (inkY + y) * w + inkX, inkW);
+            } else {
+                System.arraycopy(ink, inkPos + y * inkW, dst, (inkY + y) * w + inkX, inkW);
+            }
+        }
+    }
+
+    // writes only the ink part (inkW * inkH bytes, row-major) into dst from dstOff
+    public void copyInkTo(byte[] dst, int dstOff) {
+        if (packed != null) {
+            unpack(0, dst, dstOff, inkW * inkH);
+        } else {
+            System.arraycopy(ink, inkPos, dst, dstOff, inkW * inkH);
+        }
+    }
+
+    // new bitmap with palette indices changed through the table (zero must stay zero),
+    // for packed bitmap only the local table is changed
+    public GlyphBitmap remap(byte[] table) {
+        if (packed != null) {
+            byte[] mappedTable = new byte[this.table.length];
+            for (int i = 0; i < mappedTable.length; i++) {
+                mappedTable[i] = table[this.table[i] & 0xFF];
+            }
+            return new GlyphBitmap(w, h, inkX, inkY, inkW, inkH, packed, bits, mappedTable);
+        }
+        byte[] mapped = new byte[inkW * inkH];
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i] = table[ink[inkPos + i] & 0xFF];
+        }
+        return new GlyphBitmap(w, h, inkX, inkY, inkW, inkH, mapped, 0, false);
+    }
+
+    // bitmap which doesn't depend on the char data or the font buffer
+    // (it's this one if it has own pixels, otherwise compact copy of it)
+    public GlyphBitmap detach() {
+        if (!view) {
+            return this;
+        }
+        byte[] cell = new byte[w * h];
+        expandTo(cell);
+        return of(cell, w, h);
+    }
+
+    // hash of the cell size and the non zero pixels (palette indices) with their place in the cell,
+    // same for the same pixels however they're stored (view of the whole cell, compact or packed),
+    // it's not kept for the view as the array under it can change
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0 || view) {
+            result = 31 * w + h;
+            byte[] row = new byte[inkW];
+            for (int y = 0; y < inkH; y++) {
+                getInkRow(y, row);
+                int base = (inkY + y) * w + inkX;
+                for (int x = 0; x < inkW; x++) {
+                    if (row[x] != 0) {
+                        result = 31 * (31 * result + base + x) + row[x];
+                    }
+                }
+            }
+            if (!view) {
+                hash = result;
+            }
+        }
+        return result;
+    }
+
+    // bitmaps are equal if they have same cell size and same pixels (however they're stored)
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof GlyphBitmap)) {
+            return false;
+        }
+        final GlyphBitmap other = (GlyphBitmap) obj;
+        if (w != other.w || h != other.h) {
+            return false;
+        }
+        if (!view && !other.view && hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        if (inkX != other.inkX || inkY != other.inkY || inkW != other.inkW || inkH != other.inkH) {
+            // different ink boxes (like view of the whole cell and compact copy of it),
+            // pixels are compared over both of them (outside of them it's all zeros)
+            int x0 = Math.min(inkX, other.inkX);
+            int y0 = Math.min(inkY, other.inkY);
+            int x1 = Math.max(inkX + inkW, other.inkX + other.inkW);
+            int y1 = Math.max(inkY + inkH, other.inkY + other.inkH);
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    if (get(x, y) != other.get(x, y)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        if (packed != null && other.packed != null && bits == other.bits
+                && Arrays.equals(table, other.table)) {
+            return Arrays.equals(packed, other.packed);
+        }
+        byte[] row = new byte[inkW];
+        byte[] otherRow = new byte[inkW];
+        for (int y = 0; y < inkH; y++) {
+            getInkRow(y, row);
+            other.getInkRow(y, otherRow);
+            if (!Arrays.equals(row, otherRow)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //--------------------------------------------------------------------------
+    // D - GETTERS
+    //--------------------------------------------------------------------------
+    public int getW() {
+        return w;
+    }
+
+    public int getH() {
+        return h;
+    }
+
+    public int getInkX() {
+        return inkX;
+    }
+
+    public int getInkY() {
+        return inkY;
+    }
+
+    public int getInkW() {
+        return inkW;
+    }
+
+    public int getInkH() {
+        return inkH;
+    }
+
+    // bits per pixel {1, 2, 4 or 8}
+    public int getBits() {
+        return bits;
+    }
+
+    public boolean isPacked() {
+        return packed != null;
+    }
+
+    public boolean isView() {
+        return view;
+    }
+
+}
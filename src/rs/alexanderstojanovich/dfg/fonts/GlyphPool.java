@@ -0,0 +1,93 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.fonts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class GlyphPool { // identical char bitmaps (across the fonts) are kept only once
+
+    // Pool shared by all the fonts which don't have their own
+    private static final GlyphPool SHARED = new GlyphPool();
+
+    // Bitmap -> same bitmap and how many chars use it
+    private final Map<GlyphBitmap, Entry> entries = new HashMap<>();
+
+    private static class Entry {
+
+        final GlyphBitmap bitmap;
+        int refs;
+
+        Entry(GlyphBitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // A - METHODS
+    //--------------------------------------------------------------------------
+    // returns bitmap from the pool equal to given one (given one is added if there isn't any),
+    // each call must be followed by release when the bitmap is not used anymore
+    public synchronized GlyphBitmap intern(GlyphBitmap bitmap) {
+        Entry entry = entries.get(bitmap);
+        if (entry == null) {
+            entry = new Entry(bitmap);
+            entries.put(bitmap, entry);
+        }
+        entry.refs++;
+        return entry.bitmap;
+    }
+
+    // bitmap is not used by the char anymore, it's removed when nobody uses it
+    public synchronized void release(GlyphBitmap bitmap) {
+        Entry entry = entries.get(bitmap);
+        if (entry != null && --entry.refs <= 0) {
+            entries.remove(bitmap);
+        }
+    }
+
+    // removes all the bitmaps (chars which use them keep them)
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    //--------------------------------------------------------------------------
+    // B - GETTERS
+    //--------------------------------------------------------------------------
+    public static GlyphPool getShared() {
+        return SHARED;
+    }
+
+    // number of different bitmaps in the pool
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // number of chars using the bitmaps from the pool
+    public synchronized int getReferences() {
+        int refs = 0;
+        for (Entry entry : entries.values()) {
+            refs += entry.refs;
+        }
+        return refs;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.fonts;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class PK3 { // PK3 is just a zip archive, (G)ZDoom and Zandronum look for the fonts in "fonts/" folder
+
+    // Folder inside the archive which holds the font lumps
+    public static final String FONTS_DIR = "fonts/";
+    // Biggest entry which can be read (largest array)
+    private static final int MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+
+    //--------------------------------------------------------------------------
+    // A - STATIC METHODS
+    //--------------------------------------------------------------------------
+    // reads all the font lumps from the archive, entries are streamed one by one
+    // (archive is never extracted), key is the entry name inside the archive,
+    // null if the archive couldn't be read (fonts are never partially returned)
+    public static Map<String, DoomFont> loadFromFile(File file) {
+        return loadFromFile(file, false);
+    }
+
+    // same as above, lump fonts {FON1, FON2} can be lazy (chars decoded when they're needed),
+    // which is good for browsing many fonts as only headers and metrics are read
+    public static Map<String, DoomFont> loadFromFile(File file, boolean lazy) {
+        return loadFromFile(file, lazy, null);
+    }
+
+    // same as above, chars of the fonts are interned into the pool (null means they're not),
+    // for lazy fonts it means that all the chars are decoded,
+    // each of the fonts should be released when it's not needed anymore
+    public static Map<String, DoomFont> loadFromFile(File file, boolean lazy, GlyphPool pool) {
+        Map<String, DoomFont> fonts = null;
+        if (file == null || !file.exists()) {
+            return fonts;
+        }
+        // 1. streaming the entries and keeping only the raw lumps
+        List<String> names = new ArrayList<>();
+        List<byte[]> buffers = new ArrayList<>();
+        boolean ok = false;
+        ZipInputStream zis = null;
+        try {
+            zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).startsWith(FONTS_DIR)) {
+                    names.add(entry.getName());
+                    buffers.add(readEntry(zis, entry));
+                }
+                zis.closeEntry();
+            }
+            ok = true;
+        } catch (IOException ex) {
+            Logger.getLogger(PK3.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            if (zis != null) {
+                try {
+                    zis.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(PK3.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+        // entry which failed partway makes the whole archive unreadable
+        if (!ok) {
+            return fonts;
+        }
+        // 2. parsing the lumps, they don't depend on each other so it's done in parallel
+        DoomFont[] parsed = new DoomFont[buffers.size()];
+        Arrays.parallelSetAll(parsed, i -> {
+            DoomFont font = DoomFont.loadFromBuffer(buffers.get(i), lazy);
+            if (font != null && pool != null) {
+                font.intern(pool);
+            }
+            return font;
+        });
+        // 3. keeping only the ones recognized as fonts {FON1, FON2 or BMF}
+        fonts = new LinkedHashMap<>();
+        for (int i = 0; i < parsed.length; i++) {
+            if (parsed[i] != null) {
+                fonts.put(names.get(i), parsed[i]);
+            }
+        }
+        return fonts;
+    }
+
+    // reads single font lump from the archive (only that entry is read),
+    // null if there isn't such entry or it's not a font
+    public static DoomFont loadFromFile(File file, String name) {
+        DoomFont font = null;
+        if (file == null || name == null || !file.exists()) {
+            return font;
+        }
+        try (ZipFile zip = new ZipFile(file)) {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry != null && !entry.isDirectory()) {
+                try (InputStream is = zip.getInputStream(entry)) {
+                    font = DoomFont.loadFromBuffer(readEntry(is, entry));
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(PK3.class.getName()).log(Level.SEVERE, null, ex);
+            font = null;
+        }
+        return font;
+    }
+
+    // names of the font lumps in the archive, only the header of each entry in the folder is read
+    // (nothing is decoded), null if the archive couldn't be read
+    public static List<String> listFonts(File file) {
+        List<String> names = null;
+        if (file == null || !file.exists()) {
+            return names;
+        }
+        try (ZipFile zip = new ZipFile(file)) {
+            List<String> found = new ArrayList<>();
+            byte[] header = new byte[4];
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).startsWith(FONTS_DIR)) {
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        if (readHeader(is, header) && DoomFont.typeOf(header) != null) {
+                            found.add(entry.getName());
+                        }
+                    }
+                }
+            }
+            names = found;
+        } catch (IOException ex) {
+            Logger.getLogger(PK3.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return names;
+    }
+
+    // writes the fonts into the archive (archive is created if doesn't exist),
+    // existing entries which are not fonts are kept untouched,
+    // key is the entry name (if it's not in the folder, it's put in "fonts/")
+    public static boolean saveToFile(File file, Map<String, DoomFont> fonts) {
+        boolean success = false;
+        if (file == null || fonts == null) {
+            return success;
+        }
+        Map<String, String> env = new HashMap<>();
+        env.put("create", String.valueOf(!file.exists()));
+        URI uri = URI.create("jar:" + file.toURI());
+        try (FileSystem zipfs = FileSystems.newFileSystem(uri, env)) {
+            Files.createDirectories(zipfs.getPath(FONTS_DIR));
+            // each entry is deflated by the thread which writes it,
+            // so the independent entries are compressed in parallel
+            success = fonts.entrySet().parallelStream()
+                    .map(e -> writeEntry(zipfs, e.getKey(), e.getValue()))
+                    .reduce(true, Boolean::logicalAnd);
+        } catch (IOException ex) {
+            Logger.getLogger(PK3.class.getName()).log(Level.SEVERE, null, ex);
+            success = false;
+        }
+        return success;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - PRIVATE HELPER METHODS
+    //--------------------------------------------------------------------------
+    // reads the current entry, buffer is at least 64K as with the font files,
+    // when the size is known buffer has one byte more (so the end is reached without growing it)
+    private static byte[] readEntry(InputStream is, ZipEntry entry) throws IOException {
+        long size = entry.getSize(); // -1 if it's unknown
+        if (size >= MAX_ENTRY_SIZE) {
+            throw new IOException("Entry " + entry.getName() + " is too big!");
+        }
+        byte[] buffer = new byte[(int) Math.max(size + 1, 65536)];
+        int len = 0;
+        int n;
+        while ((n = is.read(buffer, len, buffer.length - len)) > 0) {
+            len += n;
+            if (len == buffer.length) {
+                if (size >= 0 || buffer.length == MAX_ENTRY_SIZE) {
+                    throw new IOException("Entry " + entry.getName() + " is bigger than expected!");
+                }
+                // size is unknown for some entries, so grow it
+                buffer = Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, MAX_ENTRY_SIZE));
+            }
+        }
+        return buffer;
+    }
+
+    // reads the first bytes of the entry, false if it's shorter than the header
+    private static boolean readHeader(InputStream is, byte[] header) throws IOException {
+        int len = 0;
+        int n;
+        while (len < header.length && (n = is.read(header, len, header.length - len)) > 0) {
+            len += n;
+        }
+        return len == header.length;
+    }
+
+    // writes single font into the archive (replacing old entry)
+    private static boolean writeEntry(FileSystem zipfs, String name, DoomFont font) {
+        boolean success = false;
+        if (!name.toLowerCase(Locale.ROOT).startsWith(FONTS_DIR)) {
+            name = FONTS_DIR + name;
+        }
+        Path path = zipfs.getPath(name);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (OutputStream os = Files.newOutputStream(path)) {
+                os.write(font.getBuffer(), 0, font.getPos());
+            }
+            success = true;
+        } catch (IOException ex) {
+            Logger.getLogger(PK3.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return success;
+    }
+
+}
@@ -24,6 +24,7 @@ import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.Toolkit;
 import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -31,15 +32,28 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ImageIcon;
 import javax.swing.JColorChooser;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import rs.alexanderstojanovich.dfg.fonts.BMF;
+import rs.alexanderstojanovich.dfg.fonts.DoomFont;
+import rs.alexanderstojanovich.dfg.fonts.FontSnapshot;
+import rs.alexanderstojanovich.dfg.fonts.PK3;
+import rs.alexanderstojanovich.dfg.job.JobWatcher;
+import rs.alexanderstojanovich.dfg.render.RenderDaemon;
 
 /**
  *
@@ -55,7 +69,7 @@ public class GUI extends javax.swing.JFrame {
     // Load font or derive font from existing one - the mode
     private Operation mode = Operation.LOAD;
 
-    // Is the reset triggered by the GUI Thread
+    // Is the reset in progress (widgets changed by the reset don't trigger the refresh)
     private boolean resetTriggered = false;
 
     // internal logic of the GUI
@@ -78,41 +92,60 @@ public class GUI extends javax.swing.JFrame {
     // path to tips
     private static final String TIPS_FILE_NAME = "dfg_tips.txt";
 
-    // used for synchronizing GUI SWING showing thread 
-    // with working thread which refreshes the GUI
-    private final Object objWrkRef = new Object();
-    private final Object objWrkPal = new Object();
+    // Settings which are not kept in the widgets (font, text, format and colors),
+    // used only on GUI Swing thread, working thread gets the snapshot of them
+    private GUIRefreshParams.Builder settings = new GUIRefreshParams.Builder();
 
-    // for synchornizing relevant to the reset
-    private final Object objReset = new Object();
+    // Single working thread which refreshes the palette and the image for the user,
+    // it's the only one using the GUI logic (widgets are used only on GUI Swing thread)
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Refresh Working Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    // Working threads which refreshes gui and palette for the user
-    private Thread workerRefresh, workerPalette;
+    // Latest refresh which working thread didn't take yet (null if there isn't any),
+    // refreshes made while working thread is busy become the single one
+    private final AtomicReference<GUIRefreshParams> pendingRefresh = new AtomicReference<>();
+
+    // Image displayed in the preview (used only on GUI Swing thread), derived one
+    // is given back to the logic for reuse only after the preview has been given the next one
+    private BufferedImage displayedImage;
+
+    // Palette loaded last time and was it in DERIVE mode (used only by working thread)
+    private String loadedPalette;
+    private boolean loadedDerive;
 
     // Opened and saved file respectively
     private File openedFile, savedFile;
+    // Font lump in the PK3 archive it's saved into (null if it's saved as the file itself)
+    private String savedEntry;
+    // Saving into the archive is chosen by this filter (or by the extension)
+    private final FileNameExtensionFilter pk3Filter = new FileNameExtensionFilter("PK3 Archive (*.pk3)", "pk3");
 
     // Initilaztion progress in percentage
-    private static int progress = 0;
+    private static volatile int progress = 0;
+    // Listeners which are signaled when the progress changes (splash screen)
+    private static final List<GUIProgressListener> progressListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Creates new form NewJFrame
      */
     public GUI() {
         initComponents();
-        progress += 25;
+        addProgress(25);
         initPosition();
         initRadioButtonGroup();
-        progress += 17;
+        addProgress(17);
         initFontSelector();
-        progress += 15;
+        addProgress(15);
         // initTextSampleArea();
         initDFGLogos();
-        progress += 5;
+        addProgress(5);
         initDialogs();
-        progress += 9;
+        addProgress(9);
         this.guiLogic = new GUILogic(this.palettePreview);
-        progress += 13;
+        addProgress(13);
     }
 
     /**
@@ -180,10 +213,10 @@ public class GUI extends javax.swing.JFrame {
         shadowAngleValue = new javax.swing.JSpinner();
         shLabel = new javax.swing.JLabel();
         shColorButton = new javax.swing.JButton();
-        palettePreview = new javax.swing.JPanel();
+        palettePreview = new rs.alexanderstojanovich.dfg.gui.GUIPaletteView();
         imagePanel = new javax.swing.JPanel();
         imageScrollPane = new javax.swing.JScrollPane();
-        imagePreview = new javax.swing.JLabel();
+        imagePreview = new rs.alexanderstojanovich.dfg.gui.GUIImagePreview();
         imageZoomLabel = new javax.swing.JLabel();
         imageZoomSlider = new javax.swing.JSlider();
         imageZoomPercentLabel = new javax.swing.JLabel();
@@ -193,6 +226,8 @@ public class GUI extends javax.swing.JFrame {
         separator1 = new javax.swing.JPopupMenu.Separator();
         fileSave = new javax.swing.JMenuItem();
         fileSaveAs = new javax.swing.JMenuItem();
+        fileOptimalRLE = new javax.swing.JCheckBoxMenuItem();
+        fileSortPalette = new javax.swing.JCheckBoxMenuItem();
         separator2 = new javax.swing.JPopupMenu.Separator();
         fileReset = new javax.swing.JMenuItem();
         separator3 = new javax.swing.JPopupMenu.Separator();
@@ -664,7 +699,6 @@ public class GUI extends javax.swing.JFrame {
 
         palettePreview.setBorder(javax.swing.BorderFactory.createTitledBorder(null, "Palette", javax.swing.border.TitledBorder.CENTER, javax.swing.border.TitledBorder.TOP));
         palettePreview.setPreferredSize(new java.awt.Dimension(240, 240));
-        palettePreview.setLayout(new java.awt.GridLayout(16, 16, 1, 1));
 
         javax.swing.GroupLayout effectsPanelLayout = new javax.swing.GroupLayout(effectsPanel);
         effectsPanel.setLayout(effectsPanelLayout);
@@ -770,7 +804,6 @@ public class GUI extends javax.swing.JFrame {
 
         imagePanel.setBorder(javax.swing.BorderFactory.createTitledBorder(null, "Image", javax.swing.border.TitledBorder.CENTER, javax.swing.border.TitledBorder.DEFAULT_POSITION));
 
-        imagePreview.setVerticalAlignment(javax.swing.SwingConstants.TOP);
         imageScrollPane.setViewportView(imagePreview);
 
         imageZoomLabel.setText("Zoom:");
@@ -845,6 +878,15 @@ public class GUI extends javax.swing.JFrame {
             }
         });
         fileMenu.add(fileSaveAs);
+
+        fileOptimalRLE.setSelected(true);
+        fileOptimalRLE.setText("Optimal RLE");
+        fileOptimalRLE.setToolTipText("Derived lump fonts (FON1, FON2) are saved with the smallest RLE encoding");
+        fileMenu.add(fileOptimalRLE);
+
+        fileSortPalette.setText("Sort Palette");
+        fileSortPalette.setToolTipText("Palette of derived Big Font (FON2) is sorted by luminance before saving (longer runs, smaller lump)");
+        fileMenu.add(fileSortPalette);
         fileMenu.add(separator2);
 
         fileReset.setText("Reset");
@@ -970,14 +1012,14 @@ public class GUI extends javax.swing.JFrame {
         updateColors(); // update the colors in the Effects section
         updateFont(); // update the font from the Font section
         updateSpinners(); // update the values from character range in the Text section
-        activatePalette(); // wake up the thread which refreshes the palette and calls "activate Refresh" thread
+        activateRefresh(); // palette is loaded again as well since the mode has changed
     }//GEN-LAST:event_radioButtonCreateActionPerformed
 
     private void radioButtonLoadPreActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_radioButtonLoadPreActionPerformed
         // TODO add your handling code here:        
         this.mode = Operation.LOAD;
         this.imageZoomSlider.setValue(100);
-        activatePalette();
+        activateRefresh(); // palette is loaded again as well since the mode has changed
     }//GEN-LAST:event_radioButtonLoadPreActionPerformed
 
     private void useAntialiasingActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_useAntialiasingActionPerformed
@@ -987,18 +1029,18 @@ public class GUI extends javax.swing.JFrame {
 
     private void fgButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_fgButtonActionPerformed
         // TODO add your handling code here:
-        Color color = JColorChooser.showDialog(this, "Choose Foreground Color", this.guiLogic.getFgColor());
+        Color color = JColorChooser.showDialog(this, "Choose Foreground Color", this.settings.getFgColor());
         if (color != null) {
-            this.guiLogic.setFgColor(color);
+            this.settings.setFgColor(color);
         }
         activateRefresh();
     }//GEN-LAST:event_fgButtonActionPerformed
 
     private void bgButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_bgButtonActionPerformed
         // TODO add your handling code here:
-        Color color = JColorChooser.showDialog(this, "Choose Background Color", this.guiLogic.getBgColor());
+        Color color = JColorChooser.showDialog(this, "Choose Background Color", this.settings.getBgColor());
         if (color != null) {
-            this.guiLogic.setBgColor(color);
+            this.settings.setBgColor(color);
         }
         activateRefresh();
     }//GEN-LAST:event_bgButtonActionPerformed
@@ -1010,9 +1052,9 @@ public class GUI extends javax.swing.JFrame {
 
     private void outlineColorButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_outlineColorButtonActionPerformed
         // TODO add your handling code here:
-        Color color = JColorChooser.showDialog(this, "Choose Outline Color", this.guiLogic.getOutlineColor());
+        Color color = JColorChooser.showDialog(this, "Choose Outline Color", this.settings.getOutlineColor());
         if (color != null) {
-            this.guiLogic.setOutlineColor(color);
+            this.settings.setOutlineColor(color);
         }
         activateRefresh();
     }//GEN-LAST:event_outlineColorButtonActionPerformed
@@ -1045,8 +1087,7 @@ public class GUI extends javax.swing.JFrame {
 
     private void paletteSelectorActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_paletteSelectorActionPerformed
         // TODO add your handling code here:
-//        activateRefresh(); -- bad refresh and palette are in race condition :(
-        activatePalette();
+        activateRefresh(); // palette is loaded by the same (working) thread before the image
     }//GEN-LAST:event_paletteSelectorActionPerformed
 
     private void fileResetActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_fileResetActionPerformed
@@ -1084,13 +1125,13 @@ public class GUI extends javax.swing.JFrame {
         updateFormat(); // update the format in the Font section
         updateFont();   // update the font from the Font section
         updateSpinners();  // update the values from character range in the Text section
-        activateRefresh(); // wake up the thread which refreshes the palette and calls "activate Refresh" thread
+        activateRefresh(); // wake up the thread which refreshes the palette and the image
     }//GEN-LAST:event_fontDerFormatSelectorActionPerformed
 
     private void imageZoomSliderStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_imageZoomSliderStateChanged
         // TODO add your handling code here:
         this.imageZoomPercentLabel.setText(String.valueOf(this.imageZoomSlider.getValue()) + "%");
-        activateRefresh();
+        this.imagePreview.setZoom(this.imageZoomSlider.getValue()); // only repaints, image stays the same
     }//GEN-LAST:event_imageZoomSliderStateChanged
 
     private void textMultiplierStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_textMultiplierStateChanged
@@ -1110,9 +1151,9 @@ public class GUI extends javax.swing.JFrame {
 
     private void shColorButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_shColorButtonActionPerformed
         // TODO add your handling code here:
-        Color color = JColorChooser.showDialog(this, "Choose Shadow Color", this.guiLogic.getShadowColor());
+        Color color = JColorChooser.showDialog(this, "Choose Shadow Color", this.settings.getShadowColor());
         if (color != null) {
-            this.guiLogic.setShadowColor(color);
+            this.settings.setShadowColor(color);
         }
         activateRefresh();
     }//GEN-LAST:event_shColorButtonActionPerformed
@@ -1121,6 +1162,16 @@ public class GUI extends javax.swing.JFrame {
      * @param args the command line arguments
      */
     public static void main(String args[]) {
+        // server mode - no window, just rendering over local HTTP
+        if (args.length > 0 && "--server".equals(args[0])) {
+            RenderDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // watch mode - no window, job files are rebuilt when they or their fonts change
+        if (args.length > 0 && "--watch".equals(args[0])) {
+            JobWatcher.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         /* Set the Nimbus look and feel */
         //<editor-fold defaultstate="collapsed" desc=" Look and feel setting code (optional) ">
         /* If Nimbus (introduced in Java SE 6) is not available, stay with the default look and feel.
@@ -1149,36 +1200,16 @@ public class GUI extends javax.swing.JFrame {
         //</editor-fold>        
         GUISplashScreen splashScreen = new GUISplashScreen();
         splashScreen.setUp();
-        Thread splashUpdater = new Thread(splashScreen, "Splash Screen Updater");
-        splashUpdater.start();
+        GUI.addProgressListener(splashScreen); // it's disposed when the progress reaches 100%
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(new Runnable() {
             @Override
             public void run() {
                 GUI gui = new GUI();
                 gui.setVisible(true);
-                // Making thread which work is to refresh the gui
-                gui.workerRefresh = new Thread("Refresh Working Thread") {
-                    @Override
-                    public void run() {
-                        while (gui.isVisible()) {
-                            gui.workRefresh();
-                        }
-                    }
-                };
-                gui.workerRefresh.start();
-                GUI.progress += 8;
-                // Making thread which work is to refresh the palette
-                gui.workerPalette = new Thread("Palette Working Thread") {
-                    @Override
-                    public void run() {
-                        while (gui.isVisible()) {
-                            gui.workPalette();
-                        }
-                    }
-                };
-                gui.workerPalette.start();
-                GUI.progress += 8;
+                // first refresh loads the palette as well
+                gui.activateRefresh();
+                GUI.addProgress(16);
             }
         });
     }
@@ -1188,6 +1219,24 @@ public class GUI extends javax.swing.JFrame {
         return progress;
     }
 
+    public static void addProgressListener(GUIProgressListener listener) {
+        progressListeners.add(listener);
+    }
+
+    public static void removeProgressListener(GUIProgressListener listener) {
+        progressListeners.remove(listener);
+    }
+
+    // advances the progress and signals the listeners (GUI Swing thread)
+    private static void addProgress(int amount) {
+        if (amount != 0) {
+            progress = Math.min(progress + amount, 100);
+            for (GUIProgressListener listener : progressListeners) {
+                listener.progressChanged(progress);
+            }
+        }
+    }
+
     // Fetch all the fonts (their names) installed on the system (this OS)
     private static ArrayList<String> getAllFontFamily() {
         ArrayList<String> names = new ArrayList<String>();
@@ -1246,115 +1295,172 @@ public class GUI extends javax.swing.JFrame {
 
         fileSaver.addChoosableFileFilter(lmpFilter);
         fileSaver.addChoosableFileFilter(bmfFilter);
+        fileSaver.addChoosableFileFilter(pk3Filter);
     }
 
-    // trigger the smaller thread to work
+    // takes snapshot of the widgets and triggers the working thread to refresh (GUI Swing thread),
+    // if previous refresh is still waiting it's replaced with this one
     private void activateRefresh() {
-        synchronized (objWrkRef) {
-            objWrkRef.notify();
+        if (guiLogic == null || resetTriggered) { // GUI is not constructed yet or it's being reset
+            return;
+        }
+        if (pendingRefresh.getAndSet(snapshotParams()) == null) {
+            worker.execute(this::workRefresh);
         }
     }
 
-    // trigger the bigger thread to work (which calls smaller thread)
-    private void activatePalette() {
-        synchronized (objWrkPal) {
-            objWrkPal.notify();
-        }
+    // copies the widgets and the settings into immutable snapshot (GUI Swing thread)
+    private GUIRefreshParams snapshotParams() {
+        return settings
+                .setDerive(mode == Operation.DERIVE)
+                .setInfo(infoStrTextFld.getText())
+                .setTest(testStrTextFld.getText())
+                .setTransparency(fontTestTransparency.isSelected())
+                .setAntialiasing(useAntialiasing.isSelected())
+                .setGradient(useGradient.isSelected())
+                .setOutlineWidth(useOutline.isSelected() ? (Integer) widthAmount.getValue() : 0)
+                .setShadow(useShadow.isSelected())
+                .setShadowAngle((int) shadowAngleValue.getValue())
+                .setMultiplier((double) textMultiplier.getValue())
+                .setPalette((String) paletteSelector.getSelectedItem())
+                .build();
     }
 
     // Open the file, the font type {FON1, FON2, BMF} will be recognized,
-    // it opens and set the mode to true
+    // it opens and set the mode to true (file is read by the working thread
+    // after the refreshes which are already queued, GUI Swing thread never waits for it)
     private void fileOpen() {
         int returnVal = fileOpener.showOpenDialog(this);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             openedFile = fileOpener.getSelectedFile();
-            boolean success = this.guiLogic.fileOpen(openedFile);
-            if (success) {
-                radioButtonLoadPre.setSelected(true);
-                this.imageZoomSlider.setValue(100); // resets the slider to 100%
-                mode = Operation.LOAD; // just for any case sets the mode to LOAD
-                activateRefresh(); // needs to be refreshed again since it's loaded..
-                JOptionPane.showMessageDialog(this,
-                        "File opened successfuly!",
-                        "File Open",
-                        JOptionPane.INFORMATION_MESSAGE);
-            } else {
+            final File file = openedFile;
+            worker.execute(() -> {
+                boolean success = this.guiLogic.fileOpen(file);
                 String errorMsg = (this.guiLogic.getFontLoad() != null) ? this.guiLogic.getFontLoad().getErrorMsg() : "Error - Invalid header!";
-                JOptionPane.showMessageDialog(this,
-                        "File open resulted in error!" + "\n" + errorMsg,
-                        "File Open",
-                        JOptionPane.ERROR_MESSAGE);
-            }
+                SwingUtilities.invokeLater(() -> publishFileOpen(success, errorMsg));
+            });
         }
     }
 
-    private void fileSave() {
-        activateRefresh(); // needs to be refreshed again before save..
-        // so in order to save Font we need either to be loaded
-        // or image from which we generate to be not null..
-        if (this.guiLogic.getFontLoad() != null || this.guiLogic.getImageRender() != null) {
-            int returnVal = fileSaver.showSaveDialog(this);
-            if (returnVal == JFileChooser.APPROVE_OPTION) {
-                savedFile = fileSaver.getSelectedFile();
-                boolean success = false;
-                if (mode == Operation.LOAD) { // if we choose to save already loaded font
-                    success = this.guiLogic.fileSaveFontLoad(savedFile);
-                } else if (mode == Operation.DERIVE) { // if we choose to save generated font from image and context                                                           
-                    success = this.guiLogic.fileSaveFontDer(savedFile);
-                }
-                if (!success) {
-                    JOptionPane.showMessageDialog(this,
-                            "File save failed!",
-                            "File Save",
-                            JOptionPane.ERROR_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(this,
-                            "File save successful!",
-                            "File Save",
-                            JOptionPane.INFORMATION_MESSAGE);
-                }
-            }
+    // displays the result of opening the file (GUI Swing thread)
+    private void publishFileOpen(boolean success, String errorMsg) {
+        if (success) {
+            radioButtonLoadPre.setSelected(true);
+            this.imageZoomSlider.setValue(100); // resets the slider to 100%
+            mode = Operation.LOAD; // just for any case sets the mode to LOAD
+            activateRefresh(); // needs to be refreshed again since it's loaded..
+            JOptionPane.showMessageDialog(this,
+                    "File opened successfuly!",
+                    "File Open",
+                    JOptionPane.INFORMATION_MESSAGE);
         } else {
             JOptionPane.showMessageDialog(this,
-                    "Nothing to save!",
-                    "File Save",
+                    "File open resulted in error!" + "\n" + errorMsg,
+                    "File Open",
                     JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    // so in order to save Font we need either to be loaded
+    // or image from which we generate to be not null.. (working thread)
+    private boolean canSave() {
+        return this.guiLogic.getFontLoad() != null || this.guiLogic.getImageRender() != null;
+    }
+
+    private void fileSave() {
+        activateRefresh(); // needs to be refreshed again before save..
+        // whether there is anything to save is known after the queued refreshes,
+        // then the dialog is shown on GUI Swing thread
+        worker.execute(() -> {
+            boolean ok = canSave();
+            SwingUtilities.invokeLater(() -> {
+                if (!ok) {
+                    publishFileSave(null);
+                    return;
+                }
+                int returnVal = fileSaver.showSaveDialog(this);
+                if (returnVal == JFileChooser.APPROVE_OPTION) {
+                    File file = fileSaver.getSelectedFile();
+                    String entry = null;
+                    if (fileSaver.getFileFilter() == pk3Filter && !file.getName().toLowerCase(Locale.ROOT).endsWith(".pk3")) {
+                        file = new File(file.getPath() + ".pk3");
+                    }
+                    if (file.getName().toLowerCase(Locale.ROOT).endsWith(".pk3")) { // font goes into the archive
+                        entry = (String) JOptionPane.showInputDialog(this,
+                                "Font lump inside the archive:",
+                                "File Save",
+                                JOptionPane.QUESTION_MESSAGE, null, null, defaultEntry());
+                        if (entry == null || entry.trim().isEmpty()) { // cancelled
+                            return;
+                        }
+                        entry = entry.trim();
+                    }
+                    savedFile = file;
+                    savedEntry = entry;
+                    workSave(savedFile, savedEntry, mode);
+                }
+            });
+        });
+    }
+
     // Overwrite correspoding font file 
     private void fileOverwrite() {
         activateRefresh();
-        // so in order to save Font we need either to be loaded
-        // or image from which we generate to be not null..
         if (savedFile == null) {
             fileSave();
         } else {
-            if (this.guiLogic.getFontLoad() != null || this.guiLogic.getImageRender() != null) {
-                boolean success = false;
-                if (mode == Operation.LOAD) { // if we choose to save already loaded Font
-                    success = this.guiLogic.fileSaveFontLoad(savedFile);
-                } else if (mode == Operation.DERIVE) { // if we choose to save generated BMF from image and context                                                           
-                    success = this.guiLogic.fileSaveFontDer(savedFile);
-                }
-                if (!success) {
-                    JOptionPane.showMessageDialog(this,
-                            "File save failed!",
-                            "File Save",
-                            JOptionPane.ERROR_MESSAGE);
-                } else {
-
-                    JOptionPane.showMessageDialog(this,
-                            "File save successful!",
-                            "File Save",
-                            JOptionPane.INFORMATION_MESSAGE);
+            workSave(savedFile, savedEntry, mode);
+        }
+    }
+
+    // name of the font lump in the archive which is offered when saving into PK3,
+    // opened font keeps it's file name (lumps are in the "fonts/" folder)
+    private String defaultEntry() {
+        if (mode == Operation.LOAD && openedFile != null) {
+            return PK3.FONTS_DIR + openedFile.getName();
+        }
+        return PK3.FONTS_DIR + "font" + (fontDerFormatSelector.getSelectedIndex() == 2 ? ".bmf" : ".lmp");
+    }
+
+    // saves the font on the working thread (after the refreshes which are already queued),
+    // into the PK3 archive if the entry isn't null, result is displayed on GUI Swing thread
+    private void workSave(File file, String entry, Operation saveMode) {
+        boolean optimalRLE = fileOptimalRLE.isSelected(); // save options are taken on GUI Swing thread
+        boolean sortPalette = fileSortPalette.isSelected();
+        worker.execute(() -> {
+            this.guiLogic.setOptimalRLE(optimalRLE);
+            this.guiLogic.setSortPalette(sortPalette);
+            Boolean success = null; // nothing to save
+            if (canSave()) {
+                success = false;
+                if (saveMode == Operation.LOAD) { // if we choose to save already loaded font
+                    success = this.guiLogic.fileSaveFontLoad(file, entry);
+                } else if (saveMode == Operation.DERIVE) { // if we choose to save generated font from image and context
+                    success = this.guiLogic.fileSaveFontDer(file, entry);
                 }
-            } else {
-                JOptionPane.showMessageDialog(this,
-                        "Nothing to save!",
-                        "File Save",
-                        JOptionPane.ERROR_MESSAGE);
             }
+            final Boolean result = success;
+            SwingUtilities.invokeLater(() -> publishFileSave(result));
+        });
+    }
+
+    // displays the result of saving the file, null if there was nothing to save (GUI Swing thread)
+    private void publishFileSave(Boolean success) {
+        if (success == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Nothing to save!",
+                    "File Save",
+                    JOptionPane.ERROR_MESSAGE);
+        } else if (!success) {
+            JOptionPane.showMessageDialog(this,
+                    "File save failed!",
+                    "File Save",
+                    JOptionPane.ERROR_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this,
+                    "File save successful!",
+                    "File Save",
+                    JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
@@ -1362,13 +1468,13 @@ public class GUI extends javax.swing.JFrame {
     private void updateFormat() {
         switch (fontDerFormatSelector.getSelectedIndex()) {
             case 0:
-                guiLogic.setFontFormat("FON1");
+                settings.setFontFormat("FON1");
                 break;
             case 1:
-                guiLogic.setFontFormat("FON2");
+                settings.setFontFormat("FON2");
                 break;
             case 2:
-                guiLogic.setFontFormat("BMF");
+                settings.setFontFormat("BMF");
                 break;
         }
     }
@@ -1387,9 +1493,7 @@ public class GUI extends javax.swing.JFrame {
         }
         // set the font in the text sample for display
         this.textSample.setFont(font);
-        if (this.guiLogic != null) {
-            this.guiLogic.setMyFont(font);
-        }
+        this.settings.setFont(font);
     }
 
     // update spinners in the Text region
@@ -1404,35 +1508,35 @@ public class GUI extends javax.swing.JFrame {
 
         StringBuilder sb = new StringBuilder();
         if ((int) textFirstChar.getValue() <= (int) textLastChar.getValue()) {
-            if (this.guiLogic.getFontFormat() != null && !this.guiLogic.getFontFormat().equals("FON1")) {
+            if (this.settings.getFontFormat() != null && !this.settings.getFontFormat().equals("FON1")) {
                 for (int i = (Integer) textFirstChar.getValue(); i <= (Integer) textLastChar.getValue(); i++) {
                     sb.append((char) (i));
                 }
-                this.guiLogic.setMyText(sb.toString());
+                this.settings.setText(sb.toString());
                 textSample.setText(sb.toString());
             } else {
                 for (int i = 0; i < 256; i++) {
                     sb.append((char) (i));
                 }
-                this.guiLogic.setMyText(sb.toString());
+                this.settings.setText(sb.toString());
                 textSample.setText(sb.toString());
             }
         }
-        this.guiLogic.setSpacing((Integer) textSpacing.getValue());
+        this.settings.setSpacing((Integer) textSpacing.getValue());
     }
 
     // updating the colors on the GUI
     private void updateColors() {
-        fgButton.setBackground(this.guiLogic.getFgColor());
-        bgButton.setBackground(this.guiLogic.getBgColor());
-        outlineColorButton.setBackground(this.guiLogic.getOutlineColor());
-        shColorButton.setBackground(this.guiLogic.getShadowColor());
+        fgButton.setBackground(this.settings.getFgColor());
+        bgButton.setBackground(this.settings.getBgColor());
+        outlineColorButton.setBackground(this.settings.getOutlineColor());
+        shColorButton.setBackground(this.settings.getShadowColor());
     }
 
     // enables or disables components on 3 JPanels depending on operation LOAD/DERIVE
     private void setEnabledRegions(boolean bool) {
-        infoStrTextFld.setEditable(bool && guiLogic != null
-                && guiLogic.getFontFormat() != null && guiLogic.getFontFormat().equals("BMF"));
+        infoStrTextFld.setEditable(bool
+                && settings.getFontFormat() != null && settings.getFontFormat().equals("BMF"));
         testStrTextFld.setEditable(!bool);
 
         fontDerFormatSelector.setEnabled(bool);
@@ -1454,139 +1558,132 @@ public class GUI extends javax.swing.JFrame {
         }
     }
 
-    // GUI Refresh method
+    // GUI Refresh method (working thread), it uses only the GUI logic and the latest snapshot,
+    // result is displayed on GUI Swing thread
     private void workRefresh() {
-        if (!resetTriggered) { // reset triggered is what prevents those threads from working                        
-            updateColors();
-            ImageIcon icon = null;
-            imagePreview.setIcon(icon);
-
-            if (guiLogic.getFontLoad() != null) {
-                switch (guiLogic.getFontLoad().getType()) {
-                    case "FON1":
-                        this.fontLoadFormatTextFld.setText("Console Font (FON1)");
-                        break;
-                    case "FON2":
-                        this.fontLoadFormatTextFld.setText("Big Font (FON2)");
-                        break;
-                    case "BMF":
-                        this.fontLoadFormatTextFld.setText("Byte Map Font (BMF)");
-                        break;
-                    default:
-                        this.fontLoadFormatTextFld.setText("");
-                        break;
-                }
-            } else {
-                this.fontLoadFormatTextFld.setText("");
-            }
-
-            this.guiLogic.setZoom(this.imageZoomSlider.getValue());
+        GUIRefreshParams params = pendingRefresh.getAndSet(null);
+        if (params != null) {
+            workRefresh(params);
+        }
+    }
 
-            if (this.mode == Operation.DERIVE) {
+    // refreshes with given snapshot (working thread)
+    private void workRefresh(GUIRefreshParams params) {
+        guiLogic.setParams(params);
+        workPalette(params);
+
+        BufferedImage image = null;
+        FontSnapshot font = null; // displayed instead of the image (all the chars of loaded font)
+        String formatText = "";
+        String infoText = null; // info of loaded font, null keeps what's in the field
+
+        DoomFont fontLoad = guiLogic.getFontLoad();
+        if (fontLoad != null) {
+            switch (fontLoad.getType()) {
+                case "FON1":
+                    formatText = "Console Font (FON1)";
+                    break;
+                case "FON2":
+                    formatText = "Big Font (FON2)";
+                    break;
+                case "BMF":
+                    formatText = "Byte Map Font (BMF)";
+                    break;
+                default:
+                    break;
+            }
+        }
 
-                setEnabledRegions(true); // enables many features                                                              
+        if (params.isDerive()) {
+            image = this.guiLogic.giveFontDerImage(params.getFontFormat().equals("FON1"),
+                    params.isTransparency(), params.isAntialiasing(),
+                    params.isGradient(), params.getOutlineWidth(),
+                    params.isShadow(), params.getShadowAngle(),
+                    params.getMultiplier()
+            );
+        } else if (fontLoad != null) {
+            infoText = (fontLoad instanceof BMF) ? ((BMF) fontLoad).getInfo() : "";
+            image = this.guiLogic.giveFontLoadImage(params.isTransparency());
+            if (image == null) {
+                font = this.guiLogic.getFontLoadSnapshot();
+            }
+        }
 
-                this.guiLogic.setMyInfo(infoStrTextFld.getText());
+        final BufferedImage resultImage = image;
+        final FontSnapshot resultFont = font;
+        final String resultFormat = formatText;
+        final String resultInfo = infoText;
+        SwingUtilities.invokeLater(() -> publishRefresh(params, resultImage, resultFont, resultFormat, resultInfo));
+    }
 
-                int outlineWidth = useOutline.isSelected() ? (Integer) widthAmount.getValue() : 0;
+    // displays result of the refresh (GUI Swing thread)
+    private void publishRefresh(GUIRefreshParams params, BufferedImage image, FontSnapshot font, String formatText, String infoText) {
+        updateColors();
+        this.fontLoadFormatTextFld.setText(formatText);
 
-                icon = this.guiLogic.giveFontDerIcon(guiLogic.getFontFormat().equals("FON1"),
-                        fontTestTransparency.isSelected(), useAntialiasing.isSelected(),
-                        useGradient.isSelected(), outlineWidth,
-                        useShadow.isSelected(), (int) shadowAngleValue.getValue(),
-                        (double) textMultiplier.getValue()
-                );
-            } else if (this.mode == Operation.LOAD) {
-                setEnabledRegions(false); // disables many features                                 
+        if (params.isDerive()) {
+            setEnabledRegions(true); // enables many features
+        } else {
+            setEnabledRegions(false); // disables many features
+            if (!textSample.getText().isEmpty()) {
                 textSample.setText("");
-                if (this.guiLogic.getFontLoad() != null) {
-                    if (this.guiLogic.getFontLoad() instanceof BMF) {
-                        BMF bmfLoad = (BMF) this.guiLogic.getFontLoad();
-                        infoStrTextFld.setText(bmfLoad.getInfo());
-                    } else {
-                        infoStrTextFld.setText("");
-                    }
-                    this.guiLogic.setMyTest(testStrTextFld.getText());
-                    icon = this.guiLogic.giveFontLoadIcon(fontTestTransparency.isSelected());
-                }
             }
-
-            if (useOutline.isSelected()) {
-                widthLabel.setEnabled(true);
-                widthAmount.setEnabled(true);
-            } else {
-                widthLabel.setEnabled(false);
-                widthAmount.setEnabled(false);
+            if (infoText != null) {
+                infoStrTextFld.setText(infoText);
             }
+        }
 
-            imagePreview.setIcon(icon);
-
-            synchronized (objReset) {
-                objReset.notify();
-            }
+        if (useOutline.isSelected()) {
+            widthLabel.setEnabled(true);
+            widthAmount.setEnabled(true);
+        } else {
+            widthLabel.setEnabled(false);
+            widthAmount.setEnabled(false);
+        }
 
-            synchronized (objWrkRef) {
-                try {
-                    objWrkRef.wait();
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+        palettePreview.setEnabled(true);
+        if (font != null) {
+            imagePreview.setFontSnapshot(font, params.isTransparency());
         } else {
-            try {
-                synchronized (objReset) {
-                    objReset.wait();
-                }
-            } catch (InterruptedException ex) {
-                Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
-            }
+            imagePreview.setImage(image);
+        }
+        // preview doesn't paint the previous one anymore (images not from the pool are ignored)
+        if (displayedImage != image) {
+            guiLogic.releaseImage(displayedImage);
         }
+        displayedImage = image;
     }
 
-    // Palette refresh method
-    private void workPalette() {
-        if (!this.resetTriggered) { // reset triggered is what prevents those threads from working
-            String selectedItem = (String) paletteSelector.getSelectedItem();
-            palettePreview.setEnabled(true);
-            switch (selectedItem) {
-                case "Doom":
-                    this.guiLogic.loadPalette("DoomPalette.pal");
-                    break;
-                case "Heretic":
-                    this.guiLogic.loadPalette("HereticPalette.pal");
-                    break;
-                case "Hexen":
-                    this.guiLogic.loadPalette("HexenPalette.pal");
-                    break;
-                case "6-bit RGB":
-                    this.guiLogic.load6bitRGBPalette();
-                    break;
-                case "8-bit RGB":
-                    this.guiLogic.load8bitRGBPalette();
-                    break;
-                default:
-                    this.guiLogic.loadPalette(null);
-                    break;
-            }
-
-            activateRefresh(); // this is better approach since race condition is over                        
-
-            synchronized (objWrkPal) {
-                try {
-                    objWrkPal.wait();
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-        } else {
-            synchronized (objReset) {
-                try {
-                    objReset.wait();
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(GUI.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+    // Palette refresh method (working thread), palette is loaded again
+    // only when the selection or the mode has changed
+    private void workPalette(GUIRefreshParams params) {
+        String selectedItem = params.getPalette();
+        if (selectedItem == null
+                || (selectedItem.equals(loadedPalette) && params.isDerive() == loadedDerive)) {
+            return;
         }
+        switch (selectedItem) {
+            case "Doom":
+                this.guiLogic.loadPalette("DoomPalette.pal");
+                break;
+            case "Heretic":
+                this.guiLogic.loadPalette("HereticPalette.pal");
+                break;
+            case "Hexen":
+                this.guiLogic.loadPalette("HexenPalette.pal");
+                break;
+            case "6-bit RGB":
+                this.guiLogic.load6bitRGBPalette();
+                break;
+            case "8-bit RGB":
+                this.guiLogic.load8bitRGBPalette();
+                break;
+            default:
+                this.guiLogic.loadPalette(null);
+                break;
+        }
+        this.loadedPalette = selectedItem;
+        this.loadedDerive = params.isDerive();
     }
 
     // method to display information about the program
@@ -1655,7 +1752,8 @@ public class GUI extends javax.swing.JFrame {
         }
     }
 
-    // Asynchronous reset - returns program into initial state
+    // Reset - returns program into initial state, working thread resets
+    // the logic after the refreshes which are already queued
     private void reset() {
         this.resetTriggered = true;
         this.mode = Operation.LOAD;
@@ -1690,15 +1788,22 @@ public class GUI extends javax.swing.JFrame {
         this.textFirstCharValue.setText("");
         this.textLastCharValue.setText("");
         // image reset                
-        this.imagePreview.setIcon(null);
+        this.imagePreview.setImage(null);
         this.imageZoomSlider.setValue(100);
         this.imageZoomPercentLabel.setText("100%");
         // more reset        
-        this.guiLogic.reset();
+        this.settings = new GUIRefreshParams.Builder();
+        updateColors();
         this.resetTriggered = false;
-        synchronized (objReset) {
-            objReset.notifyAll();
-        }
+        // refresh which is still waiting is from before the reset, it's dropped and
+        // the reset task itself refreshes (nothing can be rendered between the two)
+        pendingRefresh.set(null);
+        GUIRefreshParams params = snapshotParams();
+        worker.execute(() -> {
+            this.guiLogic.reset();
+            this.loadedPalette = null;
+            workRefresh(params);
+        });
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -1710,11 +1815,13 @@ public class GUI extends javax.swing.JFrame {
     private javax.swing.JMenu fileMenu;
     private javax.swing.JMenuItem fileOpen;
     private javax.swing.JFileChooser fileOpener;
+    private javax.swing.JCheckBoxMenuItem fileOptimalRLE;
     private javax.swing.JMenuItem fileQuit;
     private javax.swing.JMenuItem fileReset;
     private javax.swing.JMenuItem fileSave;
     private javax.swing.JMenuItem fileSaveAs;
     private javax.swing.JFileChooser fileSaver;
+    private javax.swing.JCheckBoxMenuItem fileSortPalette;
     private javax.swing.JLabel firstCharSemicolon;
     private javax.swing.JCheckBox fontBold;
     private javax.swing.JLabel fontDerFormatLabel;
@@ -1731,7 +1838,7 @@ public class GUI extends javax.swing.JFrame {
     private javax.swing.JLabel fontSizeLabel;
     private javax.swing.JCheckBox fontTestTransparency;
     private javax.swing.JPanel imagePanel;
-    private javax.swing.JLabel imagePreview;
+    private rs.alexanderstojanovich.dfg.gui.GUIImagePreview imagePreview;
     private javax.swing.JScrollPane imageScrollPane;
     private javax.swing.JLabel imageZoomLabel;
     private javax.swing.JLabel imageZoomPercentLabel;
@@ -1747,7 +1854,7 @@ public class GUI extends javax.swing.JFrame {
     private javax.swing.JButton outlineColorButton;
     private javax.swing.JLabel outlineLabel;
     private javax.swing.JLabel palLabel;
-    private javax.swing.JPanel palettePreview;
+    private rs.alexanderstojanovich.dfg.gui.GUIPaletteView palettePreview;
     private javax.swing.JComboBox<String> paletteSelector;
     private javax.swing.JRadioButton radioButtonCreate;
     private javax.swing.ButtonGroup radioButtonGroup;
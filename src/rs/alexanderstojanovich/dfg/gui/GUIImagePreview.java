@@ -0,0 +1,210 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import javax.swing.JComponent;
+import rs.alexanderstojanovich.dfg.fonts.FontSnapshot;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class GUIImagePreview extends JComponent { // keeps unscaled image (or font) and zooms it when it's painted
+
+    private static final long serialVersionUID = 1L;
+
+    // Image in it's real size (null if there's nothing to display or font is displayed)
+    private volatile BufferedImage image;
+    // Font displayed with all it's characters, only the chars in the visible part are rendered
+    // (null if image is displayed), big fonts are never rendered whole - it's immutable snapshot
+    // since it's painted on GUI Swing thread while the font itself is used by working thread
+    private volatile FontSnapshot font;
+    private volatile boolean transparency;
+    // Zoom factor (in percentage)
+    private volatile int zoom = 100;
+    // Zoomed visible part is made here before it's drawn (reused, grows when it's needed)
+    private BufferedImage backBuffer;
+    // Visible part of the font in it's real size is rendered here (reused, grows when it's needed)
+    private BufferedImage regionBuffer;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    public GUIImagePreview() {
+        this.setOpaque(false);
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // size of the image (or image of all the font characters) when it's zoomed
+    @Override
+    public Dimension getPreferredSize() {
+        FontSnapshot tempFont = font;
+        BufferedImage temp = image;
+        if (tempFont != null) {
+            return new Dimension(scaled(tempFont.getTotalwidth() + 2), scaled(tempFont.getMaxheight() + 2));
+        } else if (temp != null) {
+            return new Dimension(scaled(temp.getWidth()), scaled(temp.getHeight()));
+        }
+        return new Dimension(0, 0);
+    }
+
+    // zoomed length, destination pixel d shows source pixel d * 100 / zoom
+    private int scaled(int length) {
+        return Math.max((int) ((long) length * zoom / 100), 1);
+    }
+
+    // visible part of the font in it's real size (source columns and rows from x, y)
+    private BufferedImage renderRegion(FontSnapshot tempFont, int x, int y, int width, int height) {
+        Metrics.Timer timer = Metrics.start("preview.region");
+        if (regionBuffer == null || regionBuffer.getWidth() < width || regionBuffer.getHeight() < height) {
+            int bw = Math.max(width, (regionBuffer != null) ? regionBuffer.getWidth() : 0);
+            int bh = Math.max(height, (regionBuffer != null) ? regionBuffer.getHeight() : 0);
+            regionBuffer = new BufferedImage(bw, bh, BufferedImage.TYPE_INT_ARGB);
+        }
+        // background as in generateImage - transparent or black
+        int[] data = ((DataBufferInt) regionBuffer.getRaster().getDataBuffer()).getData();
+        int stride = regionBuffer.getWidth();
+        for (int j = 0; j < height; j++) {
+            Arrays.fill(data, j * stride, j * stride + width, transparency ? 0 : 0xFF000000);
+        }
+        tempFont.drawRegion(regionBuffer, x, y, width, height);
+        timer.stop();
+        return regionBuffer;
+    }
+
+    // only the visible part (clip) is zoomed, pixels are just repeated (nearest neighbour),
+    // mapping doesn't depend on the clip so the pieces painted separately fit together
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        FontSnapshot tempFont = font;
+        BufferedImage temp = image;
+        int z = zoom;
+        int srcW, srcH;
+        if (tempFont != null) {
+            srcW = tempFont.getTotalwidth() + 2;
+            srcH = tempFont.getMaxheight() + 2;
+        } else if (temp != null) {
+            srcW = temp.getWidth();
+            srcH = temp.getHeight();
+        } else {
+            return;
+        }
+        Rectangle area = new Rectangle(0, 0, scaled(srcW), scaled(srcH));
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            area = area.intersection(clip);
+        }
+        if (area.isEmpty()) {
+            return;
+        }
+        Metrics.Timer timer = Metrics.start("preview.zoom");
+        if (backBuffer == null || backBuffer.getWidth() < area.width || backBuffer.getHeight() < area.height) {
+            int bw = Math.max(area.width, (backBuffer != null) ? backBuffer.getWidth() : 0);
+            int bh = Math.max(area.height, (backBuffer != null) ? backBuffer.getHeight() : 0);
+            backBuffer = new BufferedImage(bw, bh, BufferedImage.TYPE_INT_ARGB);
+        }
+        int[] dst = ((DataBufferInt) backBuffer.getRaster().getDataBuffer()).getData();
+        int stride = backBuffer.getWidth();
+        // source columns and rows of the visible destination
+        int sxMin = Math.min((int) ((long) area.x * 100 / z), srcW - 1);
+        int sxMax = Math.min((int) ((long) (area.x + area.width - 1) * 100 / z), srcW - 1);
+        int syMin = Math.min((int) ((long) area.y * 100 / z), srcH - 1);
+        int syMax = Math.min((int) ((long) (area.y + area.height - 1) * 100 / z), srcH - 1);
+        // source is the image or the rendered visible part of the font (which starts at sxMin, syMin)
+        int ox = 0, oy = 0;
+        if (tempFont != null) {
+            temp = renderRegion(tempFont, sxMin, syMin, sxMax - sxMin + 1, syMax - syMin + 1);
+            ox = sxMin;
+            oy = syMin;
+        }
+        int[] srcRow = new int[sxMax - sxMin + 1];
+        int[] cols = new int[area.width];
+        for (int i = 0; i < area.width; i++) {
+            cols[i] = Math.min((int) ((long) (area.x + i) * 100 / z), srcW - 1) - sxMin;
+        }
+        int lastSy = -1;
+        for (int j = 0; j < area.height; j++) {
+            int sy = Math.min((int) ((long) (area.y + j) * 100 / z), srcH - 1);
+            if (sy == lastSy) { // same source row, copy the row above
+                System.arraycopy(dst, (j - 1) * stride, dst, j * stride, area.width);
+                continue;
+            }
+            temp.getRGB(sxMin - ox, sy - oy, srcRow.length, 1, srcRow, 0, srcRow.length);
+            int e = j * stride;
+            for (int i = 0; i < area.width; i++) {
+                dst[e + i] = srcRow[cols[i]];
+            }
+            lastSy = sy;
+        }
+        g.drawImage(backBuffer, area.x, area.y, area.x + area.width, area.y + area.height,
+                0, 0, area.width, area.height, null);
+        timer.stop();
+    }
+
+    //--------------------------------------------------------------------------
+    // C - GETTERS AND SETTERS
+    //--------------------------------------------------------------------------
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    // displays new image (null clears the preview)
+    public void setImage(BufferedImage image) {
+        this.font = null;
+        this.image = image;
+        this.revalidate();
+        this.repaint();
+    }
+
+    public FontSnapshot getFontSnapshot() {
+        return font;
+    }
+
+    // displays all the characters of the font (as it's generateImage would),
+    // but only the ones in the visible part are rendered whenever it's painted
+    public void setFontSnapshot(FontSnapshot font, boolean transparency) {
+        this.image = null;
+        this.transparency = transparency;
+        this.font = font;
+        this.revalidate();
+        this.repaint();
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    // changes only how the image is painted, image itself stays the same
+    public void setZoom(int zoom) {
+        if (this.zoom != zoom) {
+            this.zoom = zoom;
+            this.revalidate();
+            this.repaint();
+        }
+    }
+
+}
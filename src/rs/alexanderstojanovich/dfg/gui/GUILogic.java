@@ -23,24 +23,25 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
-import javax.swing.ImageIcon;
-import javax.swing.JLabel;
-import javax.swing.JPanel;
-import javax.swing.border.BevelBorder;
+import java.util.Collections;
 import rs.alexanderstojanovich.dfg.fonts.BMF;
 import rs.alexanderstojanovich.dfg.fonts.BMFChar;
 import rs.alexanderstojanovich.dfg.fonts.BigFont;
 import rs.alexanderstojanovich.dfg.fonts.ConsoleFont;
 import rs.alexanderstojanovich.dfg.fonts.DoomFont;
 import rs.alexanderstojanovich.dfg.fonts.DoomFontChar;
+import rs.alexanderstojanovich.dfg.fonts.FontSnapshot;
+import rs.alexanderstojanovich.dfg.fonts.PK3;
 import rs.alexanderstojanovich.dfg.util.ColorSample;
+import rs.alexanderstojanovich.dfg.util.FontEvent;
+import rs.alexanderstojanovich.dfg.util.FontEvents;
+import rs.alexanderstojanovich.dfg.util.ImagePool;
+import rs.alexanderstojanovich.dfg.util.Metrics;
 import rs.alexanderstojanovich.dfg.util.Palette;
 
 /**
@@ -71,9 +72,16 @@ public class GUILogic {
 
     // BMF font either from loading or derived from prexising font
     private DoomFont fontLoad, fontDer;
+    // Immutable copy of the loaded font which is displayed by the preview (made when it's first needed)
+    private FontSnapshot fontLoadSnapshot;
 
     // Image which contains only rendered character data
     private BufferedImage imageRender;
+    // Images of the derive pipeline are reused between refreshes
+    private final ImagePool imagePool = new ImagePool();
+    // Color model of the loaded palette (made again only when the palette changes)
+    private IndexColorModel paletteModel;
+    private byte[] paletteModelBuff;
 
     // Foreground (main or primary) color
     private Color fgColor = Color.YELLOW;
@@ -85,48 +93,35 @@ public class GUILogic {
     // shadow color (if shadow has been selected by the user)
     private Color shadowColor = Color.GRAY;
 
-    // Way of displaying colors on the layered pane
-    // via several labels coloured differently
-    private JLabel[] colorVector = new JLabel[256];
-    // Color panel which holds all the color labels
-    private JPanel colorPanel; //= new JPanel(new GridLayout(16, 16, 1, 1));
+    // Displays the palette colors (16 x 16 squares)
+    private GUIPaletteView paletteView;
     // Color vector for displaying the color map
     private DoomFontChar[] charVector;
     // Doom Font Format
     private String fontFormat = "FON1";
 
-    // Image zoom factor (in percentage)
-    private int zoom = 100;
+    // Write lump fonts with size optimal RLE (smallest lumps)
+    private boolean optimalRLE = true;
+    // Sort palette of Big Font by luminance before writing (longer runs), it's optional
+    private boolean sortPalette = false;
 
     //--------------------------------------------------------------------------
     // A - CONSTRUCTORS 
     //--------------------------------------------------------------------------    
-    public GUILogic(JPanel colorPanel) {
-        this.colorPanel = colorPanel;
-        initColorVectors();
+    public GUILogic(GUIPaletteView paletteView) {
+        this.paletteView = paletteView;
         this.initialized = true;
     }
 
     //--------------------------------------------------------------------------
     // B - METHODS
     //--------------------------------------------------------------------------
-    // init Palette display (it's called Color Vector)
-    private void initColorVectors() {
-        for (int i = 0; i < colorVector.length; i++) {
-            colorVector[i] = new JLabel();
-            colorVector[i].setBackground(Color.BLACK);
-            colorVector[i].setOpaque(true);
-            colorVector[i].setSize(9, 9);
-            colorVector[i].setBorder(new BevelBorder(BevelBorder.RAISED));
-            colorPanel.add(colorVector[i], new Integer(i));
-        }
-    }
-
     // open the file and load the font
     public boolean fileOpen(File file) {
         boolean ok = false;
         if (file != null) {
             fontLoad = DoomFont.loadFromFile(file);
+            fontLoadSnapshot = null;
             ok = ((fontLoad != null) && !fontLoad.isError());
         }
         return ok;
@@ -134,64 +129,71 @@ public class GUILogic {
 
     // saving loaded font to file
     public boolean fileSaveFontLoad(File file) {
+        return fileSaveFontLoad(file, null);
+    }
+
+    // same as above, font is saved into PK3 archive as the entry (if entry isn't null)
+    public boolean fileSaveFontLoad(File file, String entry) {
         boolean ok = false;
         if (fontLoad != null && file != null) {
-            ok = fontLoad.saveToFile(file);
+            ok = saveFont(fontLoad, file, entry);
         }
         return ok;
     }
 
     // saving derived font to file
     public boolean fileSaveFontDer(File file) {
+        return fileSaveFontDer(file, null);
+    }
+
+    // same as above, font is saved into PK3 archive as the entry (if entry isn't null)
+    public boolean fileSaveFontDer(File file, String entry) {
         boolean ok = false;
         if (file != null) {
+            Metrics.Timer timer = Metrics.start("derive.serialize");
             switch (fontFormat) {
                 case "FON1":
-                    fontDer = new ConsoleFont(imageRender, charVector);
+                    fontDer = new ConsoleFont(imageRender, charVector, optimalRLE);
                     break;
                 case "FON2":
-                    fontDer = new BigFont(imageRender, charVector);
+                    fontDer = new BigFont(imageRender, charVector, optimalRLE, sortPalette);
                     break;
                 case "BMF":
                     fontDer = new BMF(myInfo, spacing, line_height, size_over, size_under, imageRender, (BMFChar[]) charVector);
                     break;
             }
-            ok = fontDer.saveToFile(file);
+            timer.stop();
+            ok = saveFont(fontDer, file, entry);
         }
         return ok;
     }
 
-    // make icon for loaded font
-    public ImageIcon giveFontLoadIcon(boolean transparency) {
-        ImageIcon imageIcon = null;
+    // font is written into the file itself or into PK3 archive as the entry
+    // (archive is created if it doesn't exist, other entries are kept)
+    private static boolean saveFont(DoomFont font, File file, String entry) {
+        if (entry == null) {
+            return font.saveToFile(file);
+        }
+        return PK3.saveToFile(file, Collections.singletonMap(entry, font));
+    }
+
+    // make image of the test text for loaded font (unscaled, preview zooms it when it's painted),
+    // without test text it's null - preview displays the font itself rendering only the visible chars
+    public BufferedImage giveFontLoadImage(boolean transparency) {
+        BufferedImage image = null;
         if (fontLoad != null) {
+            imagePool.release(imageRender); // if it was derived
             if (!myTest.isEmpty()) {
+                Metrics.Timer timer = Metrics.start("font.generateImage");
                 imageRender = fontLoad.generateImage(transparency, myTest);
+                timer.stop();
             } else {
-                imageRender = fontLoad.generateImage(transparency);
-            }
-            if (imageRender != null) {
-                AffineTransform xform = new AffineTransform();
-                xform.scale(zoom / 100.0, zoom / 100.0);
-                AffineTransformOp atOp = new AffineTransformOp(xform, null);
-                BufferedImage destImage = atOp.filter(imageRender, null);
-                imageIcon = new ImageIcon(destImage);
-            }
-            colorPanel.setEnabled(true);
-
-            for (int i = 0; i < fontLoad.getPalette().size(); i++) {
-                Color col = fontLoad.getPalette().get(i);
-                colorVector[i].setBackground(col);
-                colorVector[i].setToolTipText("Red = " + col.getRed()
-                        + ", Green = " + col.getGreen() + ", Blue = " + col.getBlue());
-            }
-
-            for (int j = fontLoad.getPalette().size(); j < colorVector.length; j++) {
-                colorVector[j].setBackground(Color.BLACK);
-                colorVector[j].setToolTipText(null);
+                imageRender = null;
             }
+            image = imageRender;
+            paletteView.setColors(fontLoad.getPalette()); // it's enabled by the GUI when it's displayed
         }
-        return imageIcon;
+        return image;
     }
 
     // get Max String Bounds if Console Font is selected (it's gonna convert font to monospace)
@@ -209,10 +211,13 @@ public class GUILogic {
         return maxStrBounds;
     }
 
-    // make icon in case for Big Font and BMF, boolean monospace is true in case of Console Font
-    public ImageIcon giveFontDerIcon(boolean monospace, boolean transparency, boolean antialiasing, boolean useGradient, int outlineWidth, boolean shadow, int shadowAngle, double multiplier) {
-        ImageIcon imageIcon = null;
+    // make image in case for Big Font and BMF, boolean monospace is true in case of Console Font
+    // (unscaled, preview zooms it when it's painted)
+    public BufferedImage giveFontDerImage(boolean monospace, boolean transparency, boolean antialiasing, boolean useGradient, int outlineWidth, boolean shadow, int shadowAngle, double multiplier) {
+        BufferedImage image = null;
         if (myFont != null && myText != null) {
+            FontEvent event = FontEvents.begin(FontEvents.DERIVE);
+            Metrics.Timer timer = Metrics.start("derive.rasterize");
             // define sampler
             double sampler = multiplier;
             if (outlineWidth > 0) {
@@ -246,10 +251,11 @@ public class GUILogic {
             BufferedImage imageResult; // -- which is used later..
             BufferedImage imageOverlay; // -- which is used for rendering char boundaries
 
-            // creating buffered images for display
-            imageRender = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-            imageOverlay = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-            imageResult = new BufferedImage(w, h, transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            // creating buffered images for display (from the pool, previous render is given back)
+            imagePool.release(imageRender);
+            imageRender = imagePool.acquire(w, h, BufferedImage.TYPE_INT_ARGB);
+            imageOverlay = imagePool.acquire(w, h, BufferedImage.TYPE_INT_ARGB);
+            imageResult = imagePool.acquire(w, h, transparency ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
 
             // calling createGraphics() to get the Graphics2D for each
             Graphics2D graphicsOverlay = imageOverlay.createGraphics();
@@ -339,8 +345,10 @@ public class GUILogic {
                 graphicsRender.translate(cb.getWidth() + spacing, 0);
             }
 
+            timer.stop();
             //if antialiasing is selected multiply color with it's alpha
             if (antialiasing) {
+                timer = Metrics.start("derive.antialias");
                 for (int px = 0; px < imageRender.getWidth(); px++) {
                     for (int py = 0; py < imageRender.getHeight(); py++) {
                         Color srcCol = new Color(imageRender.getRGB(px, py), true);
@@ -354,11 +362,14 @@ public class GUILogic {
                         }
                     }
                 }
+                timer.stop();
             }
             // if outline is selected;                                                
             if (outlineWidth > 0) {
+                timer = Metrics.start("derive.outline");
                 // Copy of raster of unaltered image is needed!!
-                WritableRaster wr = imageRender.copyData(null);
+                BufferedImage imageCopy = imagePool.acquire(w, h, BufferedImage.TYPE_INT_ARGB);
+                WritableRaster wr = imageRender.copyData(imageCopy.getRaster());
                 for (int px = 0; px < imageRender.getWidth(); px++) {
                     for (int py = 0; py < imageRender.getHeight(); py++) {
                         Color pixCol = new Color(imageRender.getRGB(px, py), true);
@@ -369,11 +380,15 @@ public class GUILogic {
                         }
                     }
                 }
+                imagePool.release(imageCopy);
+                timer.stop();
             }
 
             // if user selected shadow; this is for shadow effect                        
             if (shadow) {
-                WritableRaster wr = imageRender.copyData(null);
+                timer = Metrics.start("derive.shadow");
+                BufferedImage imageCopy = imagePool.acquire(w, h, BufferedImage.TYPE_INT_ARGB);
+                WritableRaster wr = imageRender.copyData(imageCopy.getRaster());
                 for (DoomFontChar ch : charVector) {
                     for (int px = ch.getOffset(); px < ch.getW() + ch.getOffset(); px++) {
                         for (int py = 0; py < ch.getH(); py++) {
@@ -411,47 +426,50 @@ public class GUILogic {
                         }
                     }
                 }
+                imagePool.release(imageCopy);
+                timer.stop();
             }
 
             // finalizing - merging overlay with rendered
+            timer = Metrics.start("derive.palette");
             Graphics2D graphicsResult = imageResult.createGraphics();
             graphicsResult.drawImage(imageOverlay, 0, 0, null);
             // if user chose palette in the image, make conversion..
             if (Palette.isLoaded()) {
-                IndexColorModel icm = new IndexColorModel(8, Palette.getColors().length, Palette.getColBuff(), 0, true);
-                BufferedImage imageIndexed = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, icm);
-                imageIndexed.createGraphics().drawImage(imageRender, 0, 0, null);
+                if (paletteModelBuff != Palette.getColBuff()) {
+                    paletteModel = new IndexColorModel(8, Palette.getColors().length, Palette.getColBuff(), 0, true);
+                    paletteModelBuff = Palette.getColBuff();
+                }
+                BufferedImage imageIndexed = imagePool.acquire(w, h, paletteModel);
+                Graphics2D graphicsIndexed = imageIndexed.createGraphics();
+                graphicsIndexed.drawImage(imageRender, 0, 0, null);
+                graphicsIndexed.dispose();
+                imagePool.release(imageRender);
                 imageRender = imageIndexed;
             }
 
             graphicsResult.drawImage(imageRender, 0, 0, null);
-
-            AffineTransform xform = new AffineTransform();
-            xform.scale(zoom / 100.0, zoom / 100.0);
-            AffineTransformOp atOp = new AffineTransformOp(xform, null);
-            BufferedImage destImage = atOp.filter(imageResult, null);
-
-            imageIcon = new ImageIcon(destImage);
+            graphicsResult.dispose();
+            graphicsOverlay.dispose();
+            graphicsRender.dispose();
+            imagePool.release(imageOverlay);
+            timer.stop();
+
+            // it's given back by the one who displays it (releaseImage) once it's replaced
+            image = imageResult;
+            // bytes are of the rendered (unscaled) image
+            FontEvents.end(event, myFont.getFontName(), fontFormat, charVector.length,
+                    4L * w * h, Palette.isLoaded() ? Palette.getColors().length : 0);
         }
 
-        return imageIcon;
+        return image;
     }
 
     // Is wrapper for loading 6-bit RGB palette and displaying it's colors
     public void load6bitRGBPalette() {
         Palette.load6bitRGB();
         if (initialized) {
-            for (int i = 0; i < Palette.getColors().length; i++) {
-                Color col = new Color(Palette.getColors()[i]);
-                colorVector[i].setBackground(col);
-                colorVector[i].setToolTipText("Red = " + col.getRed()
-                        + ", Green = " + col.getGreen() + ", Blue = " + col.getBlue());
-            }
-
-            for (int i = Palette.getColors().length; i < colorVector.length; i++) {
-                colorVector[i].setBackground(Color.BLACK);
-                colorVector[i].setToolTipText(null);
-            }
+            paletteView.setColors(Palette.getColors());
         }
     }
 
@@ -459,12 +477,7 @@ public class GUILogic {
     public void load8bitRGBPalette() {
         Palette.load8bitRGB();
         if (initialized) {
-            for (int i = 0; i < Palette.getColors().length; i++) {
-                Color col = new Color(Palette.getColors()[i]);
-                colorVector[i].setBackground(col);
-                colorVector[i].setToolTipText("Red = " + col.getRed()
-                        + ", Green = " + col.getGreen() + ", Blue = " + col.getBlue());
-            }
+            paletteView.setColors(Palette.getColors());
         }
     }
 
@@ -477,20 +490,35 @@ public class GUILogic {
             Palette.load(paletteName);
         }
         if (initialized && Palette.isLoaded()) {
-            for (int i = 0; i < Palette.getColors().length; i++) {
-                Color col = new Color(Palette.getColors()[i]);
-                colorVector[i].setBackground(col);
-                colorVector[i].setToolTipText("Red = " + col.getRed()
-                        + ", Green = " + col.getGreen() + ", Blue = " + col.getBlue());
-            }
+            paletteView.setColors(Palette.getColors());
         } else if (initialized) {
-            for (JLabel label : colorVector) {
-                label.setBackground(Color.BLACK);
-                label.setToolTipText(null);
-            }
+            paletteView.setColors((int[]) null); // black squares
         }
     }
 
+    // gives back derived image which is not displayed anymore, so the next refreshes reuse it
+    // (it's safe from any thread, image must not be used after that)
+    public void releaseImage(BufferedImage image) {
+        imagePool.release(image);
+    }
+
+    // takes the widget state which GUI copied for the refresh
+    public void setParams(GUIRefreshParams params) {
+        myFont = params.getFont();
+        myText = params.getText();
+        myInfo = params.getInfo();
+        myTest = params.getTest();
+        spacing = params.getSpacing();
+
+        fgColor = params.getFgColor();
+        bgColor = params.getBgColor();
+
+        outlineColor = params.getOutlineColor();
+        shadowColor = params.getShadowColor();
+
+        fontFormat = params.getFontFormat();
+    }
+
     // Asynchronous reset  - returns the logic into initial state
     public void reset() {
         myFont = new Font("Courier New", Font.PLAIN, 12);
@@ -500,9 +528,13 @@ public class GUILogic {
         spacing = 0;
 
         fontLoad = null;
+        fontLoadSnapshot = null;
         fontDer = null;
 
         imageRender = null;
+        imagePool.clear();
+        paletteModel = null;
+        paletteModelBuff = null;
 
         fgColor = Color.YELLOW;
         bgColor = Color.CYAN;
@@ -514,14 +546,9 @@ public class GUILogic {
 
         fontFormat = "FON1";
 
-        zoom = 100; // resetting zoom; damn forgot this
         Palette.reset();
 
-        for (JLabel label : colorVector) {
-            label.setBackground(Color.BLACK);
-            label.setToolTipText("Red = " + Color.BLACK.getRed()
-                    + ", Green = " + Color.BLACK.getGreen() + ", Blue = " + Color.BLACK.getBlue());
-        }
+        paletteView.setColors(new int[GUIPaletteView.GRID * GUIPaletteView.GRID]); // all black
     }
 
     //--------------------------------------------------------------------------
@@ -605,6 +632,18 @@ public class GUILogic {
 
     public void setFontLoad(DoomFont fontLoad) {
         this.fontLoad = fontLoad;
+        this.fontLoadSnapshot = null;
+    }
+
+    // snapshot of the loaded font (null if there isn't one), it's the only thing
+    // about the font which is given to GUI Swing thread - font itself stays on working thread
+    public FontSnapshot getFontLoadSnapshot() {
+        if (fontLoadSnapshot == null && fontLoad != null) {
+            Metrics.Timer timer = Metrics.start("font.snapshot");
+            fontLoadSnapshot = fontLoad.snapshot();
+            timer.stop();
+        }
+        return fontLoadSnapshot;
     }
 
     public DoomFont getFontDer() {
@@ -647,20 +686,12 @@ public class GUILogic {
         this.outlineColor = outlineColor;
     }
 
-    public JLabel[] getColorVector() {
-        return colorVector;
-    }
-
-    public void setColorVector(JLabel[] colorVector) {
-        this.colorVector = colorVector;
-    }
-
-    public JPanel getColorPanel() {
-        return colorPanel;
+    public GUIPaletteView getPaletteView() {
+        return paletteView;
     }
 
-    public void setColorPanel(JPanel colorPanel) {
-        this.colorPanel = colorPanel;
+    public void setPaletteView(GUIPaletteView paletteView) {
+        this.paletteView = paletteView;
     }
 
     public DoomFontChar[] getCharVector() {
@@ -679,12 +710,20 @@ public class GUILogic {
         this.fontFormat = fontFormat;
     }
 
-    public int getZoom() {
-        return zoom;
+    public boolean isOptimalRLE() {
+        return optimalRLE;
+    }
+
+    public void setOptimalRLE(boolean optimalRLE) {
+        this.optimalRLE = optimalRLE;
+    }
+
+    public boolean isSortPalette() {
+        return sortPalette;
     }
 
-    public void setZoom(int zoom) {
-        this.zoom = zoom;
+    public void setSortPalette(boolean sortPalette) {
+        this.sortPalette = sortPalette;
     }
 
     public Color getShadowColor() {
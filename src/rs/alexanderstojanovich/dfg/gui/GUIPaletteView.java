@@ -0,0 +1,132 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.gui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.ToolTipManager;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class GUIPaletteView extends JComponent { // palette as 16 x 16 grid of color squares, painted at once
+
+    private static final long serialVersionUID = 1L;
+
+    // How many squares in each row and column and the gap between them
+    public static final int GRID = 16;
+    public static final int GAP = 1;
+
+    // Palette colors as RGB values (squares after the last color are black without tooltip),
+    // array is never changed, new one is set instead
+    private volatile int[] colors = new int[0];
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    public GUIPaletteView() {
+        // tooltip is asked for whenever the mouse moves (see getToolTipText)
+        ToolTipManager.sharedInstance().registerComponent(this);
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // index of the square at (x, y), -1 if it's not on any
+    private int indexAt(int x, int y) {
+        Insets insets = getInsets();
+        int cw = (getWidth() - insets.left - insets.right + GAP) / GRID;
+        int ch = (getHeight() - insets.top - insets.bottom + GAP) / GRID;
+        if (cw <= 0 || ch <= 0) {
+            return -1;
+        }
+        int col = (x - insets.left) / cw;
+        int row = (y - insets.top) / ch;
+        if (x < insets.left || y < insets.top || col >= GRID || row >= GRID) {
+            return -1;
+        }
+        return row * GRID + col;
+    }
+
+    // all the squares in single pass, each is raised (like it has bevel border)
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int[] temp = colors;
+        Insets insets = getInsets();
+        int cw = (getWidth() - insets.left - insets.right + GAP) / GRID;
+        int ch = (getHeight() - insets.top - insets.bottom + GAP) / GRID;
+        if (cw <= GAP || ch <= GAP) {
+            return;
+        }
+        int w = cw - GAP;
+        int h = ch - GAP;
+        for (int i = 0; i < GRID * GRID; i++) {
+            int x = insets.left + (i % GRID) * cw;
+            int y = insets.top + (i / GRID) * ch;
+            Color color = (i < temp.length) ? new Color(temp[i]) : Color.BLACK;
+            g.setColor(color);
+            g.fillRect(x, y, w, h);
+            g.setColor(color.brighter());
+            g.drawLine(x, y, x + w - 1, y);
+            g.drawLine(x, y, x, y + h - 1);
+            g.setColor(color.darker());
+            g.drawLine(x, y + h - 1, x + w - 1, y + h - 1);
+            g.drawLine(x + w - 1, y, x + w - 1, y + h - 1);
+        }
+    }
+
+    // tooltip of the square under the mouse, made only when it's shown
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        int[] temp = colors;
+        int index = indexAt(event.getX(), event.getY());
+        if (index < 0 || index >= temp.length) {
+            return null;
+        }
+        Color col = new Color(temp[index]);
+        return "Red = " + col.getRed() + ", Green = " + col.getGreen() + ", Blue = " + col.getBlue();
+    }
+
+    //--------------------------------------------------------------------------
+    // C - GETTERS AND SETTERS
+    //--------------------------------------------------------------------------
+    public int[] getColors() {
+        return colors.clone();
+    }
+
+    // displays the palette (RGB values), it's fine to call it from any thread
+    public void setColors(int[] colors) {
+        this.colors = (colors != null) ? colors.clone() : new int[0];
+        this.repaint();
+    }
+
+    public void setColors(List<Color> palette) {
+        int[] temp = new int[palette.size()];
+        for (int i = 0; i < temp.length; i++) {
+            temp[i] = palette.get(i).getRGB();
+        }
+        this.colors = temp;
+        this.repaint();
+    }
+
+}
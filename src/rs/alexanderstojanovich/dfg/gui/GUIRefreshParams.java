@@ -0,0 +1,309 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.gui;
+
+import java.awt.Color;
+import java.awt.Font;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public final class GUIRefreshParams { // immutable copy of the widget state, taken on the GUI (Swing) thread for the working thread
+
+    // Is the font derived (DERIVE mode) or loaded one is displayed (LOAD mode)
+    private final boolean derive;
+    // Derived font format in set {FON1, FON2, BMF}
+    private final String fontFormat;
+    // Font used to create images
+    private final Font font;
+    // Text which contains all the characters in the derived font (null if there isn't any)
+    private final String text;
+    // Spacing between the characters
+    private final int spacing;
+    // Info about the author and the font (BMF only)
+    private final String info;
+    // Test text which user wrote in order to test the loaded font
+    private final String test;
+    // Effects
+    private final boolean transparency;
+    private final boolean antialiasing;
+    private final boolean gradient;
+    private final int outlineWidth; // zero if outline is not used
+    private final boolean shadow;
+    private final int shadowAngle;
+    private final double multiplier;
+    // Colors
+    private final Color fgColor;
+    private final Color bgColor;
+    private final Color outlineColor;
+    private final Color shadowColor;
+    // Selected palette (as in the palette selector)
+    private final String palette;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    private GUIRefreshParams(Builder builder) {
+        this.derive = builder.derive;
+        this.fontFormat = builder.fontFormat;
+        this.font = builder.font;
+        this.text = builder.text;
+        this.spacing = builder.spacing;
+        this.info = builder.info;
+        this.test = builder.test;
+        this.transparency = builder.transparency;
+        this.antialiasing = builder.antialiasing;
+        this.gradient = builder.gradient;
+        this.outlineWidth = builder.outlineWidth;
+        this.shadow = builder.shadow;
+        this.shadowAngle = builder.shadowAngle;
+        this.multiplier = builder.multiplier;
+        this.fgColor = builder.fgColor;
+        this.bgColor = builder.bgColor;
+        this.outlineColor = builder.outlineColor;
+        this.shadowColor = builder.shadowColor;
+        this.palette = builder.palette;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - BUILDER (GUI KEEPS ONE AND TAKES SNAPSHOT OF IT ON EACH REFRESH)
+    //--------------------------------------------------------------------------
+    public static final class Builder {
+
+        // same defaults as in the GUI logic
+        private boolean derive = false;
+        private String fontFormat = "FON1";
+        private Font font = new Font("Courier New", Font.PLAIN, 12);
+        private String text = null;
+        private int spacing = 0;
+        private String info = "";
+        private String test = "";
+        private boolean transparency = false;
+        private boolean antialiasing = false;
+        private boolean gradient = false;
+        private int outlineWidth = 0;
+        private boolean shadow = false;
+        private int shadowAngle = 45;
+        private double multiplier = 1.0;
+        private Color fgColor = Color.YELLOW;
+        private Color bgColor = Color.CYAN;
+        private Color outlineColor = Color.BLUE;
+        private Color shadowColor = Color.GRAY;
+        private String palette = null;
+
+        public Builder setDerive(boolean derive) {
+            this.derive = derive;
+            return this;
+        }
+
+        public Builder setFontFormat(String fontFormat) {
+            this.fontFormat = fontFormat;
+            return this;
+        }
+
+        public Builder setFont(Font font) {
+            this.font = font;
+            return this;
+        }
+
+        public Builder setText(String text) {
+            this.text = text;
+            return this;
+        }
+
+        public Builder setSpacing(int spacing) {
+            this.spacing = spacing;
+            return this;
+        }
+
+        public Builder setInfo(String info) {
+            this.info = info;
+            return this;
+        }
+
+        public Builder setTest(String test) {
+            this.test = test;
+            return this;
+        }
+
+        public Builder setTransparency(boolean transparency) {
+            this.transparency = transparency;
+            return this;
+        }
+
+        public Builder setAntialiasing(boolean antialiasing) {
+            this.antialiasing = antialiasing;
+            return this;
+        }
+
+        public Builder setGradient(boolean gradient) {
+            this.gradient = gradient;
+            return this;
+        }
+
+        public Builder setOutlineWidth(int outlineWidth) {
+            this.outlineWidth = outlineWidth;
+            return this;
+        }
+
+        public Builder setShadow(boolean shadow) {
+            this.shadow = shadow;
+            return this;
+        }
+
+        public Builder setShadowAngle(int shadowAngle) {
+            this.shadowAngle = shadowAngle;
+            return this;
+        }
+
+        public Builder setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public Builder setFgColor(Color fgColor) {
+            this.fgColor = fgColor;
+            return this;
+        }
+
+        public Builder setBgColor(Color bgColor) {
+            this.bgColor = bgColor;
+            return this;
+        }
+
+        public Builder setOutlineColor(Color outlineColor) {
+            this.outlineColor = outlineColor;
+            return this;
+        }
+
+        public Builder setShadowColor(Color shadowColor) {
+            this.shadowColor = shadowColor;
+            return this;
+        }
+
+        public Builder setPalette(String palette) {
+            this.palette = palette;
+            return this;
+        }
+
+        public String getFontFormat() {
+            return fontFormat;
+        }
+
+        public Color getFgColor() {
+            return fgColor;
+        }
+
+        public Color getBgColor() {
+            return bgColor;
+        }
+
+        public Color getOutlineColor() {
+            return outlineColor;
+        }
+
+        public Color getShadowColor() {
+            return shadowColor;
+        }
+
+        public GUIRefreshParams build() {
+            return new GUIRefreshParams(this);
+        }
+
+    }
+
+    //--------------------------------------------------------------------------
+    // C - GETTERS
+    //--------------------------------------------------------------------------
+    public boolean isDerive() {
+        return derive;
+    }
+
+    public String getFontFormat() {
+        return fontFormat;
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getSpacing() {
+        return spacing;
+    }
+
+    public String getInfo() {
+        return info;
+    }
+
+    public String getTest() {
+        return test;
+    }
+
+    public boolean isTransparency() {
+        return transparency;
+    }
+
+    public boolean isAntialiasing() {
+        return antialiasing;
+    }
+
+    public boolean isGradient() {
+        return gradient;
+    }
+
+    public int getOutlineWidth() {
+        return outlineWidth;
+    }
+
+    public boolean isShadow() {
+        return shadow;
+    }
+
+    public int getShadowAngle() {
+        return shadowAngle;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public Color getFgColor() {
+        return fgColor;
+    }
+
+    public Color getBgColor() {
+        return bgColor;
+    }
+
+    public Color getOutlineColor() {
+        return outlineColor;
+    }
+
+    public Color getShadowColor() {
+        return shadowColor;
+    }
+
+    public String getPalette() {
+        return palette;
+    }
+
+}
@@ -25,12 +25,13 @@ import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JProgressBar;
 import javax.swing.JWindow;
+import javax.swing.SwingUtilities;
 
 /**
  *
  * @author Alexander Stojanovich <coas91@rocketmail.com>
  */
-public class GUISplashScreen extends JWindow implements Runnable {
+public class GUISplashScreen extends JWindow implements GUIProgressListener {
 
     // path to splash screen image
     private static final String SPLASH_FILE_NAME = "dfg_splash.png";
@@ -70,17 +71,21 @@ public class GUISplashScreen extends JWindow implements Runnable {
         this.setVisible(true);
     }
 
-    // this what this Runnable things to, updates it's progress bar depending on
-    // the GUI initialization tasks
+    // updates it's progress bar when the GUI initialization progresses, GUI Swing thread
+    // is busy with the initialization so the bar is painted right away,
+    // it's disposed (and stops listening) when the initialization is finished
     @Override
-    public void run() {
-        while (GUI.getProgress() < 100) {
-            this.progressBar.setValue(GUI.getProgress());
-            this.progressBar.validate();
+    public void progressChanged(int progress) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> progressChanged(progress));
+            return;
+        }
+        this.progressBar.setValue(progress);
+        this.progressBar.paintImmediately(0, 0, progressBar.getWidth(), progressBar.getHeight());
+        if (progress >= 100) {
+            GUI.removeProgressListener(this);
+            this.dispose();
         }
-        this.progressBar.setValue(GUI.getProgress());
-        this.progressBar.validate();
-        this.dispose();
     }
 
     //--------------------------------------------------------------------------
@@ -0,0 +1,194 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class DerivedFontCache { // saved lumps of derived fonts on the disk, key is hash of all the derivation inputs
+
+    // System property with the cache folder (default is ".dfg/cache" in the user home)
+    public static final String DIR_PROPERTY = "dfg.cacheDir";
+    // System property with the most bytes the cached lumps can take (default is 64 MB)
+    public static final String MAX_SIZE_PROPERTY = "dfg.cacheMaxSize";
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024L * 1024L;
+    // Temporary files older than this (left by killed builds) are deleted when the cache is trimmed
+    private static final long STALE_TEMP_AGE = 24L * 60L * 60L * 1000L;
+
+    // Folder where the lumps are kept (file name is the key)
+    private final File dir;
+    // When the lumps take more than this, least recently used ones are deleted
+    private final long maxSize;
+
+    // Number of times the lump was found in the cache or had to be derived
+    private long hits = 0;
+    private long misses = 0;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    public DerivedFontCache(File dir) {
+        this(dir, DEFAULT_MAX_SIZE);
+    }
+
+    public DerivedFontCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - STATIC METHODS
+    //--------------------------------------------------------------------------
+    // cache in the folder given by the system property (or the default one)
+    public static DerivedFontCache getDefault() {
+        String path = System.getProperty(DIR_PROPERTY);
+        File dir = (path != null) ? new File(path) : new File(System.getProperty("user.home"), ".dfg" + File.separator + "cache");
+        return new DerivedFontCache(dir, Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+    }
+
+    //--------------------------------------------------------------------------
+    // C - METHODS
+    //--------------------------------------------------------------------------
+    private File entry(String key) {
+        return new File(dir, key + ".lump");
+    }
+
+    // copies the cached lump to the output, returns false if it's not in the cache
+    public boolean restore(String key, File output) {
+        File entry = entry(key);
+        boolean ok = false;
+        if (entry.isFile()) {
+            try {
+                Files.copy(entry.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                entry.setLastModified(System.currentTimeMillis()); // it's recently used (kept when trimming)
+                ok = true;
+            } catch (IOException ex) {
+                Logger.getLogger(DerivedFontCache.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        synchronized (this) {
+            if (ok) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        Metrics.count(ok ? "derive.cache.hit" : "derive.cache.miss");
+        return ok;
+    }
+
+    // keeps the derived lump (it's written to temporary file first,
+    // so other builds never see half written entry), cache is trimmed afterwards
+    public boolean store(String key, File output) {
+        boolean ok = false;
+        Path temp = null;
+        try {
+            Files.createDirectories(dir.toPath());
+            temp = Files.createTempFile(dir.toPath(), key, ".tmp");
+            Files.copy(output.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, entry(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ok = true;
+        } catch (IOException ex) {
+            Logger.getLogger(DerivedFontCache.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            if (!ok && temp != null) { // copy or move failed, temporary file isn't left behind
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ex) {
+                    Logger.getLogger(DerivedFontCache.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+        }
+        if (ok) {
+            trim();
+        }
+        return ok;
+    }
+
+    // deletes least recently used lumps until they take at most max size (and stale temporary files),
+    // whole cache folder can also be deleted any time - lumps are just derived again
+    public synchronized void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp") && now - file.lastModified() > STALE_TEMP_AGE) {
+                file.delete();
+            } else if (file.getName().endsWith(".lump")) {
+                total += file.length();
+            }
+        }
+        if (total <= maxSize) {
+            return;
+        }
+        File[] lumps = dir.listFiles((d, name) -> name.endsWith(".lump"));
+        if (lumps == null) {
+            return;
+        }
+        // oldest first
+        long[] times = new long[lumps.length];
+        Integer[] order = new Integer[lumps.length];
+        for (int i = 0; i < lumps.length; i++) {
+            times[i] = lumps[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        for (int i = 0; i < order.length && total > maxSize; i++) {
+            File lump = lumps[order[i]];
+            long length = lump.length();
+            if (lump.delete()) {
+                total -= length;
+                Metrics.count("derive.cache.evict");
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // D - GETTERS
+    //--------------------------------------------------------------------------
+    public File getDir() {
+        return dir;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+}
@@ -0,0 +1,377 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.job;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rs.alexanderstojanovich.dfg.gui.GUILogic;
+import rs.alexanderstojanovich.dfg.gui.GUIPaletteView;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class FontJob { // derivation of one font lump described by the job file (.properties)
+
+    // Job file itself
+    private final File jobFile;
+    // Source font - TTF/OTF file (relative to the job file) or name of installed font
+    private String source;
+    private int size = 12;
+    private int style = Font.PLAIN;
+    // Doom Font Format in set {FON1, FON2, BMF}
+    private String format = "FON2";
+    // Output lump (relative to the job file)
+    private File output;
+    // Range of the characters (Console Font always has all 256)
+    private int first = 33;
+    private int last = 126;
+    private int spacing = 0;
+    private String info = "";
+    // Effects, same as in the GUI
+    private boolean antialiasing = true;
+    private boolean gradient = false;
+    private Color fgColor = Color.YELLOW;
+    private Color bgColor = Color.CYAN;
+    private int outlineWidth = 0;
+    private Color outlineColor = Color.BLUE;
+    private boolean shadow = false;
+    private int shadowAngle = 45;
+    private Color shadowColor = Color.GRAY;
+    private double multiplier = 1.0;
+    // Palette in set {Doom, Heretic, Hexen} or null for none
+    private String palette;
+    // Lump writing options, same as in the GUI
+    private boolean optimalRLE = true;
+    private boolean sortPalette = true;
+
+    // Changes whenever derivation gives different lumps for the same inputs
+    // (so the lumps derived by older versions are not taken from the cache)
+    private static final String CACHE_VERSION = "DFG-DERIVE-1";
+
+    // Helping the user figure out where error occurred
+    private String errorMsg;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    private FontJob(File jobFile) {
+        this.jobFile = jobFile;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - STATIC METHODS
+    //--------------------------------------------------------------------------
+    // reads the job file, returns null if it cannot be read or it's not valid
+    public static FontJob load(File jobFile) {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(jobFile)) {
+            props.load(in);
+        } catch (IOException ex) {
+            Logger.getLogger(FontJob.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+        FontJob job = new FontJob(jobFile);
+        try {
+            job.source = props.getProperty("font");
+            job.size = Integer.parseInt(props.getProperty("size", "12"));
+            switch (props.getProperty("style", "plain").toLowerCase(Locale.ROOT)) {
+                case "bold":
+                    job.style = Font.BOLD;
+                    break;
+                case "italic":
+                    job.style = Font.ITALIC;
+                    break;
+                case "bolditalic":
+                    job.style = Font.BOLD + Font.ITALIC;
+                    break;
+                default:
+                    job.style = Font.PLAIN;
+                    break;
+            }
+            job.format = props.getProperty("format", "FON2").toUpperCase(Locale.ROOT);
+            String out = props.getProperty("output");
+            job.output = (out == null) ? null : job.resolve(out);
+            job.first = Integer.parseInt(props.getProperty("first", "33"));
+            job.last = Integer.parseInt(props.getProperty("last", "126"));
+            job.spacing = Integer.parseInt(props.getProperty("spacing", "0"));
+            job.info = props.getProperty("info", "");
+            job.antialiasing = Boolean.parseBoolean(props.getProperty("antialiasing", "true"));
+            job.gradient = Boolean.parseBoolean(props.getProperty("gradient", "false"));
+            job.fgColor = Color.decode(props.getProperty("fg", "#FFFF00"));
+            job.bgColor = Color.decode(props.getProperty("bg", "#00FFFF"));
+            job.outlineWidth = Integer.parseInt(props.getProperty("outline", "0"));
+            job.outlineColor = Color.decode(props.getProperty("outlineColor", "#0000FF"));
+            job.shadow = Boolean.parseBoolean(props.getProperty("shadow", "false"));
+            job.shadowAngle = Integer.parseInt(props.getProperty("shadowAngle", "45"));
+            job.shadowColor = Color.decode(props.getProperty("shadowColor", "#808080"));
+            job.multiplier = Double.parseDouble(props.getProperty("multiplier", "1.0"));
+            job.palette = props.getProperty("palette");
+            job.optimalRLE = Boolean.parseBoolean(props.getProperty("optimalRLE", "true"));
+            job.sortPalette = Boolean.parseBoolean(props.getProperty("sortPalette", "true"));
+        } catch (NumberFormatException ex) {
+            Logger.getLogger(FontJob.class.getName()).log(Level.SEVERE, jobFile.getName(), ex);
+            return null;
+        }
+        if (job.source == null || job.output == null
+                || !(job.format.equals("FON1") || job.format.equals("FON2") || job.format.equals("BMF"))) {
+            Logger.getLogger(FontJob.class.getName()).log(Level.SEVERE, "{0} - font, output and format (FON1, FON2 or BMF) are required!", jobFile.getName());
+            return null;
+        }
+        // font is saved with the extension (if it's not given), so output is that file
+        String name = job.output.getName();
+        if (!name.contains(".lmp") && !name.contains(".bmf")) {
+            job.output = new File(job.output.getPath() + (job.format.equals("BMF") ? ".bmf" : ".lmp"));
+        }
+        return job;
+    }
+
+    //--------------------------------------------------------------------------
+    // C - METHODS
+    //--------------------------------------------------------------------------
+    // file relative to the job file folder (or absolute)
+    private File resolve(String path) {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(jobFile.getAbsoluteFile().getParentFile(), path);
+        }
+        return file.toPath().normalize().toFile();
+    }
+
+    // source font file or null if the source is installed font
+    public File getSourceFile() {
+        File file = resolve(source);
+        return file.isFile() ? file : null;
+    }
+
+    // does the source look like the font file (it has the folder or font file extension),
+    // then it's never taken as the name of installed font
+    private boolean isSourcePath() {
+        String name = source.toLowerCase(Locale.ROOT);
+        return name.indexOf('/') >= 0 || name.indexOf('\\') >= 0
+                || name.endsWith(".ttf") || name.endsWith(".otf") || name.endsWith(".ttc");
+    }
+
+    // source font file must exist and installed font must be found (otherwise
+    // Java silently falls back to Dialog), false if it's not so - errorMsg says why
+    private boolean checkSource() {
+        if (getSourceFile() != null) {
+            return true;
+        }
+        if (isSourcePath()) {
+            errorMsg = "Error - Source font file " + source + " doesn't exist!";
+            return false;
+        }
+        Font font = new Font(source, style, size);
+        if (!source.equalsIgnoreCase(font.getFamily()) && !source.equalsIgnoreCase(font.getFontName())) {
+            errorMsg = "Error - Font " + source + " is not installed!";
+            return false;
+        }
+        return true;
+    }
+
+    // files which the output depends on (job file and source font file if it's the file),
+    // missing source font file is there too - so the job is built once the file is made
+    public Set<Path> getInputs() {
+        Set<Path> inputs = new LinkedHashSet<>();
+        inputs.add(jobFile.getAbsoluteFile().toPath().normalize());
+        File sourceFile = getSourceFile();
+        if (sourceFile == null && isSourcePath()) {
+            sourceFile = resolve(source);
+        }
+        if (sourceFile != null) {
+            inputs.add(sourceFile.getAbsoluteFile().toPath().normalize());
+        }
+        return inputs;
+    }
+
+    // is output missing or older than any of the inputs
+    public boolean isStale() {
+        if (!output.exists()) {
+            return true;
+        }
+        for (Path input : getInputs()) {
+            if (input.toFile().lastModified() > output.lastModified()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // hash (SHA-256) of everything the derived lump depends on - bytes of the source font
+    // (or name of installed font) and all the settings, null if the source cannot be read
+    public String cacheKey() {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            File sourceFile = getSourceFile();
+            if (sourceFile != null) {
+                md.update(Files.readAllBytes(sourceFile.toPath()));
+            } else {
+                md.update(("installed:" + source).getBytes(StandardCharsets.UTF_8));
+            }
+            String settings = CACHE_VERSION + '|' + size + '|' + style + '|' + format + '|'
+                    + first + '|' + last + '|' + spacing + '|' + info + '|' + antialiasing + '|' + gradient + '|'
+                    + fgColor.getRGB() + '|' + bgColor.getRGB() + '|' + outlineWidth + '|' + outlineColor.getRGB() + '|'
+                    + shadow + '|' + shadowAngle + '|' + shadowColor.getRGB() + '|' + multiplier + '|'
+                    + palette + '|' + optimalRLE + '|' + sortPalette;
+            md.update(settings.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException ex) {
+            Logger.getLogger(FontJob.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    // same as run without cache, but the lump is taken from the cache if it's there
+    // (derivation is skipped entirely), otherwise derived lump is put in the cache
+    public boolean run(DerivedFontCache cache) {
+        errorMsg = null;
+        if (!checkSource()) { // never taken from the cache either
+            return false;
+        }
+        String key = (cache != null) ? cacheKey() : null;
+        if (key == null) {
+            return run();
+        }
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        if (cache.restore(key, output)) {
+            errorMsg = null;
+            return true;
+        }
+        boolean ok = run();
+        if (ok) {
+            cache.store(key, output);
+        }
+        return ok;
+    }
+
+    // derives the font and saves it to the output (same as deriving in the GUI)
+    public boolean run() {
+        Metrics.Timer timer = Metrics.start("job.derive");
+        try {
+            return derive();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private boolean derive() {
+        boolean ok = false;
+        errorMsg = null;
+        // 1. source font
+        if (!checkSource()) {
+            return ok;
+        }
+        Font font;
+        File sourceFile = getSourceFile();
+        if (sourceFile != null) {
+            try {
+                font = Font.createFont(Font.TRUETYPE_FONT, sourceFile).deriveFont(style, (float) size);
+            } catch (FontFormatException | IOException ex) {
+                Logger.getLogger(FontJob.class.getName()).log(Level.SEVERE, null, ex);
+                errorMsg = "Error - Source font cannot be read!";
+                return ok;
+            }
+        } else {
+            font = new Font(source, style, size);
+        }
+        // 2. characters
+        StringBuilder sb = new StringBuilder();
+        if (format.equals("FON1")) {
+            for (int i = 0; i < 256; i++) {
+                sb.append((char) i);
+            }
+        } else {
+            for (int i = first; i <= last; i++) {
+                sb.append((char) i);
+            }
+        }
+        // 3. deriving through the same logic as the GUI (without window)
+        GUILogic logic = new GUILogic(new GUIPaletteView());
+        logic.setMyFont(font);
+        logic.setFontFormat(format);
+        logic.setMyText(sb.toString());
+        logic.setMyInfo(info);
+        logic.setSpacing(spacing);
+        logic.setFgColor(fgColor);
+        logic.setBgColor(bgColor);
+        logic.setOutlineColor(outlineColor);
+        logic.setShadowColor(shadowColor);
+        logic.setOptimalRLE(optimalRLE);
+        logic.setSortPalette(sortPalette);
+        logic.loadPalette((palette == null) ? null : palette + "Palette.pal");
+        try {
+            logic.giveFontDerImage(format.equals("FON1"), true, antialiasing, gradient,
+                    outlineWidth, shadow, shadowAngle, multiplier);
+            File parent = output.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            ok = logic.fileSaveFontDer(output);
+            if (!ok) {
+                errorMsg = "Error - Output cannot be written!";
+            }
+        } finally {
+            logic.loadPalette(null); // palette is global, so it's not left for other jobs
+        }
+        return ok;
+    }
+
+    //--------------------------------------------------------------------------
+    // D - GETTERS
+    //--------------------------------------------------------------------------
+    public File getJobFile() {
+        return jobFile;
+    }
+
+    public File getOutput() {
+        return output;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+
+}
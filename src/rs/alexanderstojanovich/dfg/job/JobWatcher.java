@@ -0,0 +1,220 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class JobWatcher implements Runnable { // watches the job files and their source fonts, rebuilds only what changed
+
+    // Extension of the job files
+    public static final String JOB_EXT = ".properties";
+    // Changes are collected until there are none for this long (editors write files in bursts)
+    public static final long DEBOUNCE_MILLIS = 300L;
+
+    // Folder with the job files
+    private final Path jobsDir;
+    private final WatchService watchService;
+    // Watched folders
+    private final Set<Path> watchedDirs = new HashSet<>();
+    // Job file -> job
+    private final Map<Path, FontJob> jobs = new HashMap<>();
+    // Input file -> jobs which depend on it
+    private final Map<Path, Set<Path>> dependents = new HashMap<>();
+    // Lumps derived before (null if every job is always derived)
+    private final DerivedFontCache cache;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    public JobWatcher(File jobsDir) throws IOException {
+        this(jobsDir, DerivedFontCache.getDefault());
+    }
+
+    public JobWatcher(File jobsDir, DerivedFontCache cache) throws IOException {
+        this.jobsDir = jobsDir.getAbsoluteFile().toPath().normalize();
+        this.cache = cache;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        watch(this.jobsDir);
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    private void watch(Path dir) throws IOException {
+        if (dir != null && watchedDirs.add(dir)) {
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+    }
+
+    // (re)reads the job file and remembers which inputs it depends on
+    private FontJob register(Path jobPath) {
+        unregister(jobPath);
+        FontJob job = FontJob.load(jobPath.toFile());
+        if (job != null) {
+            jobs.put(jobPath, job);
+            for (Path input : job.getInputs()) {
+                dependents.computeIfAbsent(input, k -> new HashSet<>()).add(jobPath);
+                try {
+                    watch(input.getParent());
+                } catch (IOException ex) {
+                    Logger.getLogger(JobWatcher.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+        return job;
+    }
+
+    private void unregister(Path jobPath) {
+        if (jobs.remove(jobPath) != null) {
+            for (Set<Path> paths : dependents.values()) {
+                paths.remove(jobPath);
+            }
+            dependents.values().removeIf(Set::isEmpty);
+        }
+    }
+
+    private void build(FontJob job) {
+        long start = System.currentTimeMillis();
+        long hits = (cache != null) ? cache.getHits() : 0L;
+        if (job.run(cache)) {
+            boolean cached = cache != null && cache.getHits() > hits;
+            System.out.println((cached ? "Restored " : "Built ") + job.getOutput() + " (" + job.getFormat() + ") in " + (System.currentTimeMillis() - start) + " ms");
+        } else {
+            System.out.println("Failed " + job.getJobFile().getName() + " - " + job.getErrorMsg());
+        }
+    }
+
+    // reads all the jobs and builds the ones with outdated (or missing) output
+    public void buildStale() {
+        File[] files = jobsDir.toFile().listFiles((dir, name) -> name.endsWith(JOB_EXT));
+        if (files != null) {
+            for (File file : files) {
+                FontJob job = register(file.getAbsoluteFile().toPath().normalize());
+                if (job != null && job.isStale()) {
+                    build(job);
+                }
+            }
+        }
+    }
+
+    // rebuilds the jobs affected by the changed files (each job once)
+    private void rebuild(Set<Path> changed) {
+        Set<Path> affected = new LinkedHashSet<>();
+        for (Path path : changed) {
+            if (path.getParent().equals(jobsDir) && path.getFileName().toString().endsWith(JOB_EXT)) {
+                affected.add(path); // job file itself - it's read again
+                if (path.toFile().exists()) {
+                    register(path);
+                } else {
+                    unregister(path);
+                }
+            }
+            Set<Path> paths = dependents.get(path);
+            if (paths != null) {
+                affected.addAll(paths);
+            }
+        }
+        for (Path jobPath : affected) {
+            FontJob job = jobs.get(jobPath);
+            if (job != null) {
+                build(job);
+            }
+        }
+    }
+
+    // watching loop - events are collected until it's quiet for a while, then rebuilding is done
+    @Override
+    public void run() {
+        Set<Path> changed = new LinkedHashSet<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = changed.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) { // quiet period is over
+                    rebuild(changed);
+                    changed.clear();
+                    continue;
+                }
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                        changed.add(dir.resolve((Path) event.context()).normalize());
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            // stopped
+        }
+    }
+
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            Logger.getLogger(JobWatcher.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // C - MAIN (WATCH MODE)
+    //--------------------------------------------------------------------------
+    // arguments: [--once] folder with the job files
+    // (with --once stale jobs are built and it ends, as needed for the builds on CI)
+    public static void main(String[] args) {
+        boolean once = args.length > 0 && "--once".equals(args[0]);
+        int first = once ? 1 : 0;
+        File dir = new File(args.length > first ? args[first] : ".");
+        try {
+            JobWatcher watcher = new JobWatcher(dir);
+            watcher.buildStale();
+            if (once) {
+                watcher.close();
+                return;
+            }
+            System.out.println("Watching " + dir.getAbsolutePath() + " for changes...");
+            watcher.run();
+        } catch (IOException ex) {
+            Logger.getLogger(JobWatcher.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.render;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rs.alexanderstojanovich.dfg.fonts.DoomFont;
+import rs.alexanderstojanovich.dfg.fonts.FontSnapshot;
+import rs.alexanderstojanovich.dfg.fonts.GlyphPool;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class FontCache { // loaded fonts (as snapshots) shared by the renders, least recently used one is evicted
+
+    // Default number of fonts kept in the cache
+    public static final int DEFAULT_CAPACITY = 32;
+
+    // Maximum number of fonts kept
+    private final int capacity;
+    // Font id -> snapshot
+    private final Function<String, FontSnapshot> loader;
+    // Font id -> loading (or loaded) snapshot, in the order of access,
+    // each font is loaded only once even if many threads ask for it at the same time,
+    // evicted or removed snapshot is released (it's chars leave the glyph pool)
+    private final Map<String, FutureTask<FontSnapshot>> fonts;
+
+    // Number of times the font was found in the cache or had to be loaded
+    private long hits = 0;
+    private long misses = 0;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    // fonts are loaded from the files, font id is the file path
+    public FontCache(int capacity) {
+        this(capacity, FontCache::loadSnapshot);
+    }
+
+    public FontCache(int capacity, Function<String, FontSnapshot> loader) {
+        this.capacity = Math.max(capacity, 1);
+        this.loader = loader;
+        this.fonts = new LinkedHashMap<String, FutureTask<FontSnapshot>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FutureTask<FontSnapshot>> eldest) {
+                if (size() > FontCache.this.capacity) {
+                    release(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // loads the whole font from the file (snapshot needs all the chars anyway)
+    private static FontSnapshot loadSnapshot(String fontId) {
+        return snapshotOf(DoomFont.loadFromFile(new File(fontId)));
+    }
+
+    // snapshot of the font which was just loaded (with all the chars) for keeping in the cache,
+    // only the snapshot with compact chars in the shared glyph pool is kept,
+    // null if the font couldn't be loaded
+    public static FontSnapshot snapshotOf(DoomFont font) {
+        if (font == null || font.isError()) {
+            return null;
+        }
+        font.compact(); // snapshot takes the compact (packed) chars as they are
+        return font.snapshot(GlyphPool.getShared());
+    }
+
+    // releases the snapshot of the removed font, if it's still loading
+    // it's released by the loading thread (see get)
+    private static void release(FutureTask<FontSnapshot> task) {
+        if (task != null && task.isDone()) {
+            try {
+                FontSnapshot snapshot = task.get();
+                if (snapshot != null) {
+                    snapshot.release();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                // nothing was loaded, so there's nothing to release
+            }
+        }
+    }
+
+    // gives the font (loads it if it's not in the cache), null if it cannot be loaded
+    public FontSnapshot get(String fontId) {
+        FutureTask<FontSnapshot> task;
+        boolean load = false;
+        synchronized (this) {
+            task = fonts.get(fontId);
+            if (task == null) {
+                task = new FutureTask<>(() -> loader.apply(fontId));
+                fonts.put(fontId, task);
+                load = true;
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        Metrics.count(load ? "render.fontCache.miss" : "render.fontCache.hit");
+        if (load) { // loading is done outside of the lock
+            task.run();
+        }
+        FontSnapshot snapshot = null;
+        try {
+            snapshot = task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(FontCache.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        if (snapshot == null) { // not kept, so it can be tried again
+            synchronized (this) {
+                fonts.remove(fontId, task);
+            }
+        } else if (load) {
+            synchronized (this) {
+                if (!fonts.containsValue(task)) { // removed while it was loading
+                    snapshot.release();
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    // puts already loaded font in the cache under given id
+    public void put(String fontId, FontSnapshot snapshot) {
+        FutureTask<FontSnapshot> task = new FutureTask<>(() -> snapshot);
+        task.run();
+        synchronized (this) {
+            release(fonts.put(fontId, task));
+        }
+    }
+
+    // removes the font from the cache (it's loaded again when it's asked for)
+    public synchronized void invalidate(String fontId) {
+        release(fonts.remove(fontId));
+    }
+
+    public synchronized void clear() {
+        for (FutureTask<FontSnapshot> task : fonts.values()) {
+            release(task);
+        }
+        fonts.clear();
+    }
+
+    //--------------------------------------------------------------------------
+    // C - GETTERS
+    //--------------------------------------------------------------------------
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return fonts.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+}
@@ -0,0 +1,279 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.render;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import rs.alexanderstojanovich.dfg.fonts.DoomFont;
+import rs.alexanderstojanovich.dfg.fonts.FontSnapshot;
+import rs.alexanderstojanovich.dfg.fonts.PK3;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class RenderDaemon { // long running server which renders text in the loaded fonts as PNG over local HTTP
+
+    // Default port (if it's not given)
+    public static final int DEFAULT_PORT = 8765;
+    // Number of rendered PNGs kept in the response cache
+    public static final int RESPONSE_CACHE_SIZE = 1024;
+    // Longest text which is rendered (longer one is refused)
+    public static final int MAX_TEXT_LENGTH = 256;
+
+    // Font id -> where it's loaded from (font file or PK3 archive with the font entry named as id),
+    // fonts themselves are only in the font cache
+    private final Map<String, File> fontFiles = new LinkedHashMap<>();
+    private final Map<String, File> archiveFonts = new LinkedHashMap<>();
+    // Renders the requests, fonts are loaded once and shared through it's cache
+    private final RenderService renderService;
+    // (font, text, options) -> PNG, least recently used one is evicted
+    private final Map<String, byte[]> responses = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > RESPONSE_CACHE_SIZE;
+        }
+    };
+    // Requests are handled by these threads
+    private final ExecutorService executor;
+    private HttpServer server;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    // requests are rendered (and encoded) on the HTTP threads, so there should be
+    // about as many of them as there are processors
+    public RenderDaemon(int threads) {
+        this.executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        // only the registered fonts can be loaded (never arbitrary path from the request),
+        // render service doesn't have own threads
+        this.renderService = new RenderService(0, new FontCache(FontCache.DEFAULT_CAPACITY, this::loadFont));
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // registers font file {.lmp, .bmf} under it's name or all the fonts in PK3 archive
+    // under their entry names, returns how many fonts are registered
+    // (font with already registered id is refused, first one stays)
+    public int addFonts(File file) {
+        int count = 0;
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".pk3")) {
+            // only headers are read to find out which entries are fonts
+            // (archive which couldn't be read registers nothing)
+            List<String> fontIds = PK3.listFonts(file);
+            if (fontIds != null) {
+                for (String fontId : fontIds) {
+                    if (register(fontId, file, archiveFonts)) {
+                        count++;
+                    }
+                }
+            }
+        } else if (file.exists() && register(file.getName(), file, fontFiles)) {
+            count = 1;
+        }
+        return count;
+    }
+
+    private synchronized boolean register(String fontId, File file, Map<String, File> fonts) {
+        if (fontFiles.containsKey(fontId) || archiveFonts.containsKey(fontId)) {
+            Logger.getLogger(RenderDaemon.class.getName()).log(Level.WARNING,
+                    "Font {0} from {1} is already registered, it''s ignored!", new Object[]{fontId, file});
+            return false;
+        }
+        fonts.put(fontId, file);
+        return true;
+    }
+
+    // loader for the font cache
+    private FontSnapshot loadFont(String fontId) {
+        File file;
+        File archive;
+        synchronized (this) {
+            file = fontFiles.get(fontId);
+            archive = archiveFonts.get(fontId);
+        }
+        DoomFont font = null;
+        if (file != null) {
+            font = DoomFont.loadFromFile(file);
+        } else if (archive != null) {
+            font = PK3.loadFromFile(archive, fontId);
+        }
+        return FontCache.snapshotOf(font);
+    }
+
+    // starts listening on the loopback address
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/render", this::handleRender);
+        server.createContext("/fonts", this::handleFonts);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        executor.shutdown();
+        renderService.shutdown();
+    }
+
+    // GET /render?font=<id>&text=<text>&transparency=<true|false> -> PNG
+    private void handleRender(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", "Error - Only GET is supported!".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String fontId = query.get("font");
+            String text = query.get("text");
+            boolean transparency = !"false".equals(query.get("transparency"));
+            if (fontId == null || text == null || text.isEmpty()) {
+                respond(exchange, 400, "text/plain", "Error - Parameters font and text are required!".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (text.length() > MAX_TEXT_LENGTH) {
+                respond(exchange, 413, "text/plain", ("Error - Text is longer than " + MAX_TEXT_LENGTH + " characters!").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            String key = fontId + '\u0000' + text + '\u0000' + transparency;
+            byte[] png;
+            synchronized (responses) {
+                png = responses.get(key);
+            }
+            Metrics.count((png != null) ? "daemon.responseCache.hit" : "daemon.responseCache.miss");
+            if (png == null) {
+                RenderResult result = renderService.render(new RenderRequest(fontId, text, transparency, false));
+                if (result.isError()) {
+                    respond(exchange, 404, "text/plain", result.getErrorMsg().getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                Metrics.Timer timer = Metrics.start("daemon.png");
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ImageIO.write(result.getImage(), "png", baos);
+                png = baos.toByteArray();
+                timer.stop();
+                synchronized (responses) {
+                    responses.put(key, png);
+                }
+            }
+            respond(exchange, 200, "image/png", png);
+        } catch (IOException | RuntimeException ex) {
+            Logger.getLogger(RenderDaemon.class.getName()).log(Level.SEVERE, null, ex);
+            respond(exchange, 500, "text/plain", ("Error - " + ex.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // GET /fonts -> ids of the registered fonts, one per line
+    private void handleFonts(HttpExchange exchange) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            for (String fontId : fontFiles.keySet()) {
+                sb.append(fontId).append('\n');
+            }
+            for (String fontId : archiveFonts.keySet()) {
+                sb.append(fontId).append('\n');
+            }
+        }
+        respond(exchange, 200, "text/plain; charset=utf-8", sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int code, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> query = new HashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return query;
+    }
+
+    //--------------------------------------------------------------------------
+    // C - GETTERS
+    //--------------------------------------------------------------------------
+    public RenderService getRenderService() {
+        return renderService;
+    }
+
+    public int getResponseCacheSize() {
+        synchronized (responses) {
+            return responses.size();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // D - MAIN (SERVER MODE)
+    //--------------------------------------------------------------------------
+    // arguments: [port] font files {.lmp, .bmf} or archives {.pk3}
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int first = 0;
+        if (args.length > 0 && args[0].matches("\\d+")) {
+            port = Integer.parseInt(args[0]);
+            first = 1;
+        }
+        final RenderDaemon daemon = new RenderDaemon(Runtime.getRuntime().availableProcessors());
+        int count = 0;
+        for (int i = first; i < args.length; i++) {
+            count += daemon.addFonts(new File(args[i]));
+        }
+        try {
+            daemon.start(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+            System.out.println("Serving " + count + " font(s) on http://localhost:" + port + "/render?font=<id>&text=<text>");
+        } catch (IOException ex) {
+            Logger.getLogger(RenderDaemon.class.getName()).log(Level.SEVERE, null, ex);
+            daemon.stop();
+        }
+    }
+
+}
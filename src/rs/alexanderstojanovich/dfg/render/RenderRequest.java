@@ -0,0 +1,67 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.render;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public final class RenderRequest { // what text to render in which font and how
+
+    // Font id - path of the font file (or whatever the font cache loader understands)
+    private final String fontId;
+    // Text to render
+    private final String text;
+    // Is transparent background kept (ARGB) or it's black (RGB)
+    private final boolean transparency;
+    // Is result raw ARGB pixels instead of the image
+    private final boolean raw;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    public RenderRequest(String fontId, String text) {
+        this(fontId, text, true, false);
+    }
+
+    public RenderRequest(String fontId, String text, boolean transparency, boolean raw) {
+        this.fontId = fontId;
+        this.text = text;
+        this.transparency = transparency;
+        this.raw = raw;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - GETTERS
+    //--------------------------------------------------------------------------
+    public String getFontId() {
+        return fontId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isTransparency() {
+        return transparency;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+}
@@ -0,0 +1,81 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.render;
+
+import java.awt.image.BufferedImage;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public final class RenderResult { // rendered text - image or raw ARGB pixels (or error why it's not rendered)
+
+    // Request this is the result for
+    private final RenderRequest request;
+    // Rendered image (null if it's raw result or there is an error)
+    private final BufferedImage image;
+    // Raw ARGB pixels in row-major format (null if it's image or there is an error)
+    private final int[] pixels;
+    // Dimension of the result
+    private final int width, height;
+    // Helping the user figure out where error occurred (null if there's no error)
+    private final String errorMsg;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    RenderResult(RenderRequest request, BufferedImage image, int[] pixels, int width, int height, String errorMsg) {
+        this.request = request;
+        this.image = image;
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.errorMsg = errorMsg;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - GETTERS
+    //--------------------------------------------------------------------------
+    public RenderRequest getRequest() {
+        return request;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isError() {
+        return errorMsg != null;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+
+}
@@ -0,0 +1,155 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rs.alexanderstojanovich.dfg.fonts.FontSnapshot;
+import rs.alexanderstojanovich.dfg.util.Metrics;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class RenderService { // renders batches of texts on fixed number of threads, fonts are shared through the cache
+
+    // Threads which do the rendering (null if everything is rendered on the calling thread)
+    private final ExecutorService executor;
+    // Loaded fonts
+    private final FontCache fontCache;
+
+    //--------------------------------------------------------------------------
+    // A - CONSTRUCTORS
+    //--------------------------------------------------------------------------
+    // as many threads as there are processors and default size of the font cache
+    public RenderService() {
+        this(Runtime.getRuntime().availableProcessors(), new FontCache(FontCache.DEFAULT_CAPACITY));
+    }
+
+    // zero threads means there aren't any, submitted requests are rendered on the calling thread
+    // (for the callers which already have their own threads)
+    public RenderService(int threads, FontCache fontCache) {
+        this.executor = (threads <= 0) ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "DFG Render");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fontCache = fontCache;
+    }
+
+    //--------------------------------------------------------------------------
+    // B - METHODS
+    //--------------------------------------------------------------------------
+    // renders single request on the calling thread
+    public RenderResult render(RenderRequest request) {
+        Metrics.Timer timer = Metrics.start("render.text");
+        try {
+            return renderUnmeasured(request);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private RenderResult renderUnmeasured(RenderRequest request) {
+        FontSnapshot font = fontCache.get(request.getFontId());
+        if (font == null) {
+            return new RenderResult(request, null, null, 0, 0, "Error - Font " + request.getFontId() + " cannot be loaded!");
+        }
+        BufferedImage image = font.generateImage(request.isTransparency() || request.isRaw(), request.getText());
+        if (image == null) {
+            return new RenderResult(request, null, null, 0, 0, "Error - Nothing to render!");
+        }
+        if (request.isRaw()) { // image is ARGB so it's pixels are just taken (nothing is copied)
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            return new RenderResult(request, null, pixels, image.getWidth(), image.getHeight(), null);
+        }
+        return new RenderResult(request, image, null, image.getWidth(), image.getHeight(), null);
+    }
+
+    // queues single request, result is available through the future
+    public Future<RenderResult> submit(RenderRequest request) {
+        if (executor == null) {
+            FutureTask<RenderResult> task = new FutureTask<>(() -> render(request));
+            task.run();
+            return task;
+        }
+        return executor.submit(() -> render(request));
+    }
+
+    // renders all the requests (in parallel) and waits for them,
+    // results are in the same order as the requests (and there is always one for each)
+    public List<RenderResult> renderAll(List<RenderRequest> requests) {
+        List<Callable<RenderResult>> tasks = new ArrayList<>(requests.size());
+        for (RenderRequest request : requests) {
+            tasks.add(() -> render(request));
+        }
+        List<RenderResult> results = new ArrayList<>(requests.size());
+        try {
+            List<Future<RenderResult>> futures;
+            if (executor != null) {
+                futures = executor.invokeAll(tasks);
+            } else {
+                futures = new ArrayList<>(tasks.size());
+                for (Callable<RenderResult> task : tasks) {
+                    FutureTask<RenderResult> future = new FutureTask<>(task);
+                    future.run();
+                    futures.add(future);
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    Logger.getLogger(RenderService.class.getName()).log(Level.SEVERE, null, ex);
+                    results.add(new RenderResult(requests.get(i), null, null, 0, 0, "Error - " + ex.getCause()));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // caller still sees it
+        }
+        // when interrupted, requests which aren't rendered get the error (still one result for each request)
+        for (int i = results.size(); i < requests.size(); i++) {
+            results.add(new RenderResult(requests.get(i), null, null, 0, 0, "Error - Rendering was interrupted!"));
+        }
+        return results;
+    }
+
+    // stops the threads (requests already queued are finished)
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // C - GETTERS
+    //--------------------------------------------------------------------------
+    public FontCache getFontCache() {
+        return fontCache;
+    }
+
+}
@@ -0,0 +1,77 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+import java.lang.reflect.Constructor;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class FontEvents { // flight recorder events of the font operations, they're null where JFR isn't there
+
+    // Event class is in the optional source root (src-jfr) which is built only by JDK having JFR API,
+    // so it's looked up at runtime (null if it's not built or JFR API isn't in the JVM)
+    private static final Constructor<? extends FontEvent> EVENT_CONSTRUCTOR = initEventConstructor();
+
+    // Is JFR API in the JVM (Java 8u262 and newer, Java 11 and newer) and the event class built
+    public static final boolean AVAILABLE = EVENT_CONSTRUCTOR != null;
+
+    public static final String LOAD_FROM_FILE = "loadFromFile";
+    public static final String LOAD_FONT = "loadFont";
+    public static final String UNLOAD_FONT = "unloadFont";
+    public static final String DERIVE = "derive";
+    public static final String SAVE_TO_FILE = "saveToFile";
+
+    //--------------------------------------------------------------------------
+    // A - STATIC METHODS
+    //--------------------------------------------------------------------------
+    private static Constructor<? extends FontEvent> initEventConstructor() {
+        try {
+            ClassLoader loader = FontEvents.class.getClassLoader();
+            Class.forName("jdk.jfr.Event", false, loader);
+            return Class.forName("rs.alexanderstojanovich.dfg.util.JfrFontEvent", true, loader)
+                    .asSubclass(FontEvent.class).getDeclaredConstructor(String.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError ex) {
+            return null;
+        }
+    }
+
+    // starts the event of the operation (null if JFR isn't there),
+    // event class is touched only when it's available
+    public static FontEvent begin(String operation) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        FontEvent event = null;
+        try {
+            event = EVENT_CONSTRUCTOR.newInstance(operation);
+            event.begin();
+        } catch (ReflectiveOperationException ex) {
+            event = null;
+        }
+        return event;
+    }
+
+    // ends the event (it's fine if it's null)
+    public static void end(FontEvent event, String source, String fontType, int glyphCount, long bytes, int paletteSize) {
+        if (event != null) {
+            event.end(source, fontType, glyphCount, bytes, paletteSize);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class ImagePool { // reusable images, so the same work done again and again doesn't allocate pixels
+
+    // Sizes are rounded up to multiple of this (images of similar size share the rasters)
+    public static final int BUCKET = 64;
+    // At most this many free rasters are kept for each kind and size
+    public static final int MAX_FREE = 4;
+
+    // Property of the image which tells which pool it comes from
+    private static final String POOL_PROPERTY = "rs.alexanderstojanovich.dfg.ImagePool";
+
+    // Color models of the pooled image types
+    private static final ColorModel ARGB_MODEL = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).getColorModel();
+    private static final ColorModel RGB_MODEL = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getColorModel();
+
+    // Kind and bucket size -> free rasters (whole bucket size)
+    private final Map<String, ArrayDeque<WritableRaster>> free = new HashMap<>();
+    // Zeros for clearing the rasters (grows when it's needed)
+    private int[] zeroInts = new int[0];
+    private byte[] zeroBytes = new byte[0];
+
+    //--------------------------------------------------------------------------
+    // A - METHODS
+    //--------------------------------------------------------------------------
+    // cleared image (as new one would be) of the type {TYPE_INT_ARGB, TYPE_INT_RGB}
+    public synchronized BufferedImage acquire(int width, int height, int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_ARGB:
+                return acquire(width, height, ARGB_MODEL, "ARGB");
+            case BufferedImage.TYPE_INT_RGB:
+                return acquire(width, height, RGB_MODEL, "RGB");
+            default:
+                return new BufferedImage(width, height, type); // not pooled
+        }
+    }
+
+    // cleared image (all zero indices) of type TYPE_BYTE_INDEXED with the color model
+    public synchronized BufferedImage acquire(int width, int height, IndexColorModel icm) {
+        return acquire(width, height, icm, "BYTE" + icm.getPixelSize());
+    }
+
+    private BufferedImage acquire(int width, int height, ColorModel cm, String kind) {
+        int bw = (width + BUCKET - 1) / BUCKET * BUCKET;
+        int bh = (height + BUCKET - 1) / BUCKET * BUCKET;
+        ArrayDeque<WritableRaster> rasters = free.get(kind + ":" + bw + "x" + bh);
+        WritableRaster raster = (rasters != null) ? rasters.poll() : null;
+        if (raster == null) {
+            Metrics.count("imagePool.miss");
+            raster = cm.createCompatibleWritableRaster(bw, bh);
+        } else {
+            Metrics.count("imagePool.hit");
+            clear(raster, width, height);
+        }
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(POOL_PROPERTY, kind);
+        // image sees only it's part of the raster
+        return new BufferedImage(cm, raster.createWritableChild(0, 0, width, height, 0, 0, null),
+                cm.isAlphaPremultiplied(), properties);
+    }
+
+    // writes zeros in the top left part of the raster (the rest isn't seen by the image)
+    private void clear(WritableRaster raster, int width, int height) {
+        Object zeros;
+        if (raster.getTransferType() == DataBuffer.TYPE_INT) {
+            if (zeroInts.length < width) {
+                zeroInts = new int[width];
+            }
+            zeros = zeroInts;
+        } else {
+            if (zeroBytes.length < width) {
+                zeroBytes = new byte[width];
+            }
+            zeros = zeroBytes;
+        }
+        for (int y = 0; y < height; y++) {
+            raster.setDataElements(0, y, width, 1, zeros);
+        }
+    }
+
+    // gives the image back (images not from this pool and null are ignored),
+    // image must not be used after it's given back
+    public synchronized void release(BufferedImage image) {
+        if (image == null || image.getRaster().getParent() == null) {
+            return;
+        }
+        Object kind = image.getProperty(POOL_PROPERTY);
+        if (!(kind instanceof String)) {
+            return;
+        }
+        WritableRaster raster = (WritableRaster) image.getRaster().getParent();
+        String key = kind + ":" + raster.getWidth() + "x" + raster.getHeight();
+        ArrayDeque<WritableRaster> rasters = free.get(key);
+        if (rasters == null) {
+            rasters = new ArrayDeque<>();
+            free.put(key, rasters);
+        }
+        if (rasters.size() < MAX_FREE && !rasters.contains(raster)) { // given back twice is kept once
+            rasters.push(raster);
+        }
+    }
+
+    // drops all the free rasters
+    public synchronized void clear() {
+        free.clear();
+    }
+
+    // how many free rasters are kept
+    public synchronized int size() {
+        int size = 0;
+        for (ArrayDeque<WritableRaster> rasters : free.values()) {
+            size += rasters.size();
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,261 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class Metrics implements MetricsMBean { // time and allocations of each stage, visible through JMX
+
+    // Name under which it's registered in the platform MBean server
+    public static final String OBJECT_NAME = "rs.alexanderstojanovich.dfg:type=Metrics";
+    // How many last samples of each stage are kept for the percentiles
+    public static final int WINDOW = 1024;
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static volatile boolean registered = false;
+
+    // Allocated bytes of the thread (HotSpot only), null if it's not supported
+    private static final com.sun.management.ThreadMXBean THREADS = initThreads();
+
+    // Stage name -> it's samples
+    private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+    // Counter name -> value
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    //--------------------------------------------------------------------------
+    // A - STAGE AND TIMER
+    //--------------------------------------------------------------------------
+    private static class Stage { // samples of one stage
+
+        long count = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long maxNanos = 0;
+        // last samples (ring buffer)
+        final long[] window = new long[WINDOW];
+        int next = 0;
+
+        synchronized void record(long nanos, long bytes) {
+            count++;
+            totalNanos += nanos;
+            totalBytes += bytes;
+            maxNanos = Math.max(maxNanos, nanos);
+            window[next] = nanos;
+            next = (next + 1) % WINDOW;
+        }
+
+        synchronized double percentileNanos(double percentile) {
+            int n = (int) Math.min(count, WINDOW);
+            if (n == 0) {
+                return 0.0;
+            }
+            long[] sorted = Arrays.copyOf(window, n);
+            Arrays.sort(sorted);
+            int i = (int) Math.ceil(Math.max(0.0, Math.min(percentile, 100.0)) / 100.0 * n) - 1;
+            return sorted[Math.max(i, 0)];
+        }
+    }
+
+    public static final class Timer { // measures one execution of the stage (on the same thread)
+
+        private final String stage;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Timer(String stage) {
+            this.stage = stage;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        // stops measuring and records the sample, returns elapsed nanoseconds
+        public long stop() {
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = allocatedBytes() - startBytes;
+            INSTANCE.stages.computeIfAbsent(stage, k -> new Stage()).record(nanos, Math.max(bytes, 0L));
+            return nanos;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // B - STATIC METHODS
+    //--------------------------------------------------------------------------
+    private static com.sun.management.ThreadMXBean initThreads() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+                if (sunThreads.isThreadAllocatedMemorySupported()) {
+                    sunThreads.setThreadAllocatedMemoryEnabled(true);
+                    return sunThreads;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException | SecurityException ex) {
+            Logger.getLogger(Metrics.class.getName()).log(Level.INFO, "Allocation counters are not supported", ex);
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return (THREADS != null) ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+    }
+
+    // registers the MBean (once), it's done when the metrics are used for the first time
+    private static void register() {
+        if (!registered) {
+            synchronized (Metrics.class) {
+                if (!registered) {
+                    registered = true;
+                    try {
+                        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                        ObjectName name = new ObjectName(OBJECT_NAME);
+                        if (!server.isRegistered(name)) {
+                            server.registerMBean(INSTANCE, name);
+                        }
+                    } catch (JMException | SecurityException ex) {
+                        Logger.getLogger(Metrics.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            }
+        }
+    }
+
+    // starts measuring the stage on this thread
+    public static Timer start(String stage) {
+        register();
+        return new Timer(stage);
+    }
+
+    // increases the counter (cache hits, misses..) by one
+    public static void count(String name) {
+        register();
+        INSTANCE.counters.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public static Metrics getInstance() {
+        register();
+        return INSTANCE;
+    }
+
+    //--------------------------------------------------------------------------
+    // C - MBEAN METHODS
+    //--------------------------------------------------------------------------
+    private Stage stage(String name) {
+        Stage stage = stages.get(name);
+        return (stage != null) ? stage : new Stage();
+    }
+
+    @Override
+    public String[] getStageNames() {
+        return new TreeSet<>(stages.keySet()).toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getCounterNames() {
+        return new TreeSet<>(counters.keySet()).toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getSummary() {
+        List<String> lines = new ArrayList<>();
+        for (String name : getStageNames()) {
+            lines.add(String.format("%s: count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms alloc=%.0fB/op",
+                    name, getCount(name), getMeanMillis(name), getPercentileMillis(name, 50.0),
+                    getPercentileMillis(name, 90.0), getPercentileMillis(name, 99.0), getMaxMillis(name),
+                    getMeanAllocatedBytes(name)));
+        }
+        for (String name : getCounterNames()) {
+            lines.add(name + ": " + getCounter(name));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public long getCount(String name) {
+        Stage stage = stage(name);
+        synchronized (stage) {
+            return stage.count;
+        }
+    }
+
+    @Override
+    public double getMeanMillis(String name) {
+        Stage stage = stage(name);
+        synchronized (stage) {
+            return (stage.count == 0) ? 0.0 : stage.totalNanos / 1e6 / stage.count;
+        }
+    }
+
+    @Override
+    public double getPercentileMillis(String name, double percentile) {
+        return stage(name).percentileNanos(percentile) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis(String name) {
+        Stage stage = stage(name);
+        synchronized (stage) {
+            return stage.maxNanos / 1e6;
+        }
+    }
+
+    @Override
+    public long getAllocatedBytes(String name) {
+        Stage stage = stage(name);
+        synchronized (stage) {
+            return stage.totalBytes;
+        }
+    }
+
+    @Override
+    public double getMeanAllocatedBytes(String name) {
+        Stage stage = stage(name);
+        synchronized (stage) {
+            return (stage.count == 0) ? 0.0 : (double) stage.totalBytes / stage.count;
+        }
+    }
+
+    @Override
+    public long getCounter(String name) {
+        AtomicLong counter = counters.get(name);
+        return (counter != null) ? counter.get() : 0L;
+    }
+
+    @Override
+    public void reset() {
+        stages.clear();
+        counters.clear();
+    }
+
+}
@@ -0,0 +1,50 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public interface MetricsMBean { // what's visible through JMX (times are over the last samples of each stage)
+
+    // names of the measured stages
+    public String[] getStageNames();
+
+    // names of the counters (cache hits and misses)
+    public String[] getCounterNames();
+
+    // one line for each stage and counter
+    public String[] getSummary();
+
+    public long getCount(String stage);
+
+    public double getMeanMillis(String stage);
+
+    public double getPercentileMillis(String stage, double percentile);
+
+    public double getMaxMillis(String stage);
+
+    public long getAllocatedBytes(String stage);
+
+    public double getMeanAllocatedBytes(String stage);
+
+    public long getCounter(String name);
+
+    public void reset();
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class PackBits { // RLE used by the lump fonts (FON1 and FON2), works on the caller buffers only
+
+    // Code byte n in [0, 127] -> copy next n + 1 bytes literally
+    // Code byte n in [-127, -1] -> repeat next byte -n + 1 times
+    // Code byte -128 -> no operation (skipped)
+    public static final int MAX_RUN = 128;
+
+    // Returned by decode when the output would go past the character
+    public static final int OVERFLOW = -1;
+    // Returned by decode when the input ends before the character is complete
+    public static final int TRUNCATED = -2;
+
+    //--------------------------------------------------------------------------
+    // A - STATIC METHODS
+    //--------------------------------------------------------------------------
+    // worst case length of encoded data (all literals), for sizing the buffers
+    public static int maxEncodedLength(int len) {
+        return len + (len + MAX_RUN - 1) / MAX_RUN;
+    }
+
+    // encodes len bytes of src (from srcOff) into dst (from dstOff),
+    // dst must have at least maxEncodedLength(len) bytes available,
+    // returns number of bytes written into dst
+    public static int encode(byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+        int i = srcOff;
+        int end = srcOff + len;
+        int o = dstOff;
+        while (i < end) {
+            // 1. count the repeat run at this position
+            int run = 1;
+            while (i + run < end && run < MAX_RUN && src[i + run] == src[i]) {
+                run++;
+            }
+            if (run >= 2) {
+                dst[o++] = (byte) (1 - run);
+                dst[o++] = src[i];
+                i += run;
+            } else {
+                // 2. otherwise collect literals until run of three (or more) begins
+                int start = i;
+                int lit = 0;
+                while (i < end && lit < MAX_RUN) {
+                    if (i + 2 < end && src[i] == src[i + 1] && src[i] == src[i + 2]) {
+                        break;
+                    }
+                    i++;
+                    lit++;
+                }
+                dst[o++] = (byte) (lit - 1);
+                System.arraycopy(src, start, dst, o, lit);
+                o += lit;
+            }
+        }
+        return o - dstOff;
+    }
+
+    // length of the work array needed by encodeOptimal for len bytes
+    public static int workLength(int len) {
+        return 2 * (len + 1);
+    }
+
+    // encodes len bytes of src (from srcOff) into dst (from dstOff) with the smallest
+    // possible output, run boundaries are chosen by dynamic programming over the prefixes,
+    // work is caller array of at least workLength(len) ints (so nothing is allocated here),
+    // dst must have at least maxEncodedLength(len) bytes available,
+    // returns number of bytes written into dst
+    public static int encodeOptimal(byte[] src, int srcOff, int len, byte[] dst, int dstOff, int[] work) {
+        // work[i] - smallest encoded size of first i bytes
+        // work[len + 1 + i] - last run of that prefix (positive literal, negative repeat length)
+        final int runs = len + 1;
+        work[0] = 0;
+        int same = 0; // how many bytes before i are same as byte at i - 1
+        for (int i = 1; i <= len; i++) {
+            same = (i > 1 && src[srcOff + i - 1] == src[srcOff + i - 2]) ? same + 1 : 1;
+            int best = Integer.MAX_VALUE;
+            int bestRun = 0;
+            // literal run of length l ending at i costs 1 + l
+            for (int l = 1; l <= MAX_RUN && l <= i; l++) {
+                int cost = work[i - l] + 1 + l;
+                if (cost < best) {
+                    best = cost;
+                    bestRun = l;
+                }
+            }
+            // repeat run of length l ending at i costs 2
+            for (int l = 2; l <= MAX_RUN && l <= same; l++) {
+                int cost = work[i - l] + 2;
+                if (cost < best) {
+                    best = cost;
+                    bestRun = -l;
+                }
+            }
+            work[i] = best;
+            work[runs + i] = bestRun;
+        }
+        // walk back from the end and remember where each run continues (reusing the cost part)
+        int i = len;
+        while (i > 0) {
+            int j = i - Math.abs(work[runs + i]);
+            work[j] = i;
+            i = j;
+        }
+        // emit the runs from the start
+        int o = dstOff;
+        i = 0;
+        while (i < len) {
+            int next = work[i];
+            int run = work[runs + next];
+            if (run > 0) {
+                dst[o++] = (byte) (run - 1);
+                System.arraycopy(src, srcOff + i, dst, o, run);
+                o += run;
+            } else {
+                dst[o++] = (byte) (1 + run);
+                dst[o++] = src[srcOff + i];
+            }
+            i = next;
+        }
+        return o - dstOff;
+    }
+
+    // skips encoded data of numpixels bytes without decoding it (only code bytes are read),
+    // validates it same way as decode, returns position in src right after the encoded data
+    // or negative value (OVERFLOW or TRUNCATED) if data is corrupted
+    public static int skip(byte[] src, int srcPos, int srcEnd, int numpixels) {
+        int pos = srcPos;
+        while (numpixels > 0) {
+            if (pos >= srcEnd) {
+                return TRUNCATED;
+            }
+            int code = src[pos++];
+            if (code >= 0) {
+                int len = code + 1;
+                if (len > numpixels) {
+                    return OVERFLOW;
+                }
+                pos += len;
+                numpixels -= len;
+            } else if (code != -128) {
+                int len = -code + 1;
+                if (len > numpixels) {
+                    return OVERFLOW;
+                }
+                pos++;
+                numpixels -= len;
+            }
+        }
+        return (pos <= srcEnd) ? pos : TRUNCATED;
+    }
+
+    // decodes exactly numpixels bytes into dst (from dstOff), reading src from srcPos
+    // but never at or past srcEnd, returns position in src right after the encoded data
+    // or negative value (OVERFLOW or TRUNCATED) if data is corrupted
+    public static int decode(byte[] src, int srcPos, int srcEnd, byte[] dst, int dstOff, int numpixels) {
+        int pos = srcPos;
+        int e = dstOff;
+        while (numpixels > 0) { // THANKS SLADE FOR HELP!
+            if (pos >= srcEnd) {
+                return TRUNCATED;
+            }
+            int code = src[pos++];
+            if (code >= 0) {
+                int len = code + 1;
+                if (len > numpixels) { // Overflows shouldn't happen!
+                    return OVERFLOW;
+                }
+                if (pos + len > srcEnd) {
+                    return TRUNCATED;
+                }
+                System.arraycopy(src, pos, dst, e, len);
+                pos += len;
+                e += len;
+                numpixels -= len;
+            } else if (code != -128) {
+                int len = -code + 1;
+                if (len > numpixels) { // Overflows shouldn't happen!
+                    return OVERFLOW;
+                }
+                if (pos >= srcEnd) {
+                    return TRUNCATED;
+                }
+                Arrays.fill(dst, e, e + len, src[pos++]);
+                e += len;
+                numpixels -= len;
+            }
+        }
+        return pos;
+    }
+
+}
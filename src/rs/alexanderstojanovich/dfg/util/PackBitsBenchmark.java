@@ -0,0 +1,187 @@
+/* 
+ * Copyright (C) 2020 Alexander Stojanovich <coas91@rocketmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rs.alexanderstojanovich.dfg.util;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import rs.alexanderstojanovich.dfg.fonts.DoomFont;
+import rs.alexanderstojanovich.dfg.fonts.DoomFontChar;
+import rs.alexanderstojanovich.dfg.fonts.PK3;
+
+/**
+ *
+ * @author Alexander Stojanovich <coas91@rocketmail.com>
+ */
+public class PackBitsBenchmark { // measures PackBits on chars of real fonts {.lmp, .bmf, .pk3} given on the command line
+
+    // Rounds which aren't measured (JIT has to compile the codec first) and measured ones
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    // Old encoder from jimi library (com.sun.jimi.core.util.Packbits), null if jimi.jar isn't on the classpath
+    private static final Method JIMI_PACKBITS = findJimi();
+
+    // Chars of all the loaded fonts (indexed pixels, as they are encoded into the lumps)
+    private final List<byte[]> chars = new ArrayList<>();
+    private long totalBytes = 0;
+
+    //--------------------------------------------------------------------------
+    // A - METHODS
+    //--------------------------------------------------------------------------
+    private static Method findJimi() {
+        try {
+            return Class.forName("com.sun.jimi.core.util.Packbits").getMethod("packbits", byte[].class, byte[].class);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    // adds chars of the font (or of all the fonts in PK3 archive), returns how many fonts are added
+    public int addFonts(File file) {
+        int count = 0;
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".pk3")) {
+            Map<String, DoomFont> fonts = PK3.loadFromFile(file);
+            if (fonts != null) {
+                for (DoomFont font : fonts.values()) {
+                    count += addFont(font);
+                }
+            }
+        } else {
+            count = addFont(DoomFont.loadFromFile(file));
+        }
+        return count;
+    }
+
+    private int addFont(DoomFont font) {
+        if (font == null || font.isError()) {
+            return 0;
+        }
+        for (DoomFontChar ch : font.getChars()) {
+            if (ch != null && ch.getW() * ch.getH() > 0) {
+                byte[] data = new byte[ch.getW() * ch.getH()];
+                ch.copyData(data);
+                chars.add(data);
+                totalBytes += data.length;
+            }
+        }
+        return 1;
+    }
+
+    // prints throughput of both encoders, of the decoder (and of jimi encoder if it's available)
+    // with the encoded size of all the chars
+    public void run() {
+        int maxLen = 0;
+        for (byte[] data : chars) {
+            maxLen = Math.max(maxLen, data.length);
+        }
+        final byte[] dst = new byte[PackBits.maxEncodedLength(maxLen)];
+        final int[] work = new int[PackBits.workLength(maxLen)];
+        // chars encoded by the default encoder (for decoding)
+        final List<byte[]> encoded = new ArrayList<>(chars.size());
+        for (byte[] data : chars) {
+            int len = PackBits.encode(data, 0, data.length, dst, 0);
+            byte[] temp = new byte[len];
+            System.arraycopy(dst, 0, temp, 0, len);
+            encoded.add(temp);
+        }
+        final byte[] out = new byte[maxLen];
+
+        System.out.println(String.format(Locale.ROOT, "%d chars, %d bytes", chars.size(), totalBytes));
+        measure("encode", () -> {
+            long size = 0;
+            for (byte[] data : chars) {
+                size += PackBits.encode(data, 0, data.length, dst, 0);
+            }
+            return size;
+        });
+        measure("encodeOptimal", () -> {
+            long size = 0;
+            for (byte[] data : chars) {
+                size += PackBits.encodeOptimal(data, 0, data.length, dst, 0, work);
+            }
+            return size;
+        });
+        measure("decode", () -> {
+            long size = 0;
+            for (int i = 0; i < encoded.size(); i++) {
+                byte[] src = encoded.get(i);
+                size += PackBits.decode(src, 0, src.length, out, 0, chars.get(i).length);
+            }
+            return size;
+        });
+        if (JIMI_PACKBITS != null) {
+            measure("jimi packbits", () -> {
+                long size = 0;
+                for (byte[] data : chars) {
+                    // old path allocated the output for each char
+                    size += (Integer) JIMI_PACKBITS.invoke(null, data, new byte[data.length]);
+                }
+                return size;
+            });
+        } else {
+            System.out.println("jimi packbits: jimi.jar isn't on the classpath, not measured");
+        }
+    }
+
+    private interface Round {
+
+        // one pass over all the chars, returns encoded size (or decoded end position)
+        long run() throws Exception;
+    }
+
+    private void measure(String name, Round round) {
+        try {
+            long size = 0;
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                size = round.run();
+            }
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                size = round.run();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double mbs = (totalBytes / (1024.0 * 1024.0)) / (Math.max(best, 1) / 1e9);
+            System.out.println(String.format(Locale.ROOT, "%s: %.3f ms per pass, %.1f MB/s (of char data), result %d",
+                    name, best / 1e6, mbs, size));
+        } catch (Exception ex) {
+            System.out.println(name + ": failed - " + ex);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // B - MAIN
+    //--------------------------------------------------------------------------
+    public static void main(String[] args) {
+        PackBitsBenchmark benchmark = new PackBitsBenchmark();
+        int count = 0;
+        for (String arg : args) {
+            count += benchmark.addFonts(new File(arg));
+        }
+        if (count == 0) {
+            System.out.println("Usage: java -cp DoomFontGenesis.jar " + PackBitsBenchmark.class.getName() + " font.lmp|font.bmf|fonts.pk3 ...");
+            return;
+        }
+        System.out.println(count + " font(s)");
+        benchmark.run();
+    }
+
+}